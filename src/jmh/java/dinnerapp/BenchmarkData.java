@@ -0,0 +1,41 @@
+package dinnerapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Synthetic dinner lists for the benchmarks.
+final class BenchmarkData {
+    private static final String[] CUISINES = {
+        "Pizza", "Sushi", "Noodle", "Burger", "Curry", "Taco", "Ramen", "Steak", "Salad", "Dim Sum"
+    };
+
+    private BenchmarkData() {
+    }
+
+    static List<Dinner> dinners(int size) {
+        Random random = new Random(42);
+        List<Dinner> dinners = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String cuisine = CUISINES[random.nextInt(CUISINES.length)];
+            dinners.add(new Dinner(cuisine + " place " + i, cuisine + " restaurant, " + (random.nextInt(30) + 1) + " min away"));
+        }
+        return dinners;
+    }
+
+    static File tempDir() throws IOException {
+        return Files.createTempDirectory("dinner-bench").toFile();
+    }
+
+    static void delete(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package dinnerapp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Retained heap per dinner for the default list of Dinner objects against
+// ColumnarDinnerList (-Ddinner.storage=columnar). Reported as the bytesPerDinner
+// counter, measured from used heap after a full GC, next to the time to build.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class FootprintBenchmark {
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"heap", "columnar"})
+    public String storage;
+
+    private List<Dinner> source;
+    private List<Dinner> built;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long bytesPerDinner;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = BenchmarkData.dinners(size);
+    }
+
+    @TearDown(Level.Invocation)
+    public void release() {
+        built = null;
+    }
+
+    @Benchmark
+    public List<Dinner> build(Footprint footprint) {
+        long before = usedHeap();
+        List<Dinner> dinners = storage.equals("columnar") ? new ColumnarDinnerList() : new ArrayList<>();
+        // Fresh strings per dinner, as decoding a snapshot produces.
+        for (Dinner dinner : source) {
+            dinners.add(new Dinner(new String(dinner.getName()), new String(dinner.getDescription())));
+        }
+        built = dinners;
+        footprint.bytesPerDinner = (usedHeap() - before) / size;
+        return dinners;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
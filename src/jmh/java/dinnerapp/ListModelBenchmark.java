@@ -0,0 +1,74 @@
+package dinnerapp;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.DefaultListModel;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// refreshDinnerList() paths, with a listener standing in for the JList so event
+// delivery is part of the cost.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ListModelBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private List<Dinner> dinners;
+    private DefaultListModel<Dinner> defaultModel;
+    private DinnerListModel dinnerModel;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        dinners = new ArrayList<>(BenchmarkData.dinners(size));
+        defaultModel = new DefaultListModel<>();
+        defaultModel.addListDataListener(new CountingListener());
+        dinnerModel = new DinnerListModel();
+        dinnerModel.addListDataListener(new CountingListener());
+        dinnerModel.setDinners(dinners);
+    }
+
+    // What refreshDinnerList() did before DinnerListModel.
+    @Benchmark
+    public void defaultModelRefresh() {
+        defaultModel.clear();
+        for (Dinner dinner : dinners) {
+            defaultModel.addElement(dinner);
+        }
+    }
+
+    @Benchmark
+    public void dinnerModelRefresh() {
+        dinnerModel.setDinners(dinners);
+    }
+
+    @Benchmark
+    public void dinnerModelAddRemove() {
+        dinnerModel.add(new Dinner("Added", "Benchmark"));
+        dinnerModel.remove(dinners.size() - 1);
+    }
+
+    private class CountingListener implements ListDataListener {
+        public void intervalAdded(ListDataEvent e) {
+            blackhole.consume(e.getIndex1());
+        }
+
+        public void intervalRemoved(ListDataEvent e) {
+            blackhole.consume(e.getIndex1());
+        }
+
+        public void contentsChanged(ListDataEvent e) {
+            blackhole.consume(e.getIndex1());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dinnerapp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of timing an operation with Metrics, single-threaded and contended.
+// Run with -prof gc to check that recording allocates nothing.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MetricsBenchmark {
+    @Benchmark
+    public void record() {
+        Metrics.record(Metrics.Op.SAVE_DINNERS, System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        Metrics.record(Metrics.Op.SAVE_DINNERS, System.nanoTime());
+    }
+
+    @Benchmark
+    public void bytesWritten() {
+        Metrics.bytesWritten(4096);
+    }
+}
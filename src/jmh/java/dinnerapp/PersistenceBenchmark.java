@@ -0,0 +1,86 @@
+package dinnerapp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// saveDinners()/loadDinners() paths: the old Java-serialized full rewrite against
+// the binary snapshot and the journaled edit that replaced it.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PersistenceBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private File dir;
+    private List<Dinner> dinners;
+    private File legacyFile;
+    private File snapshotFile;
+    private DinnerStore store;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir();
+        dinners = BenchmarkData.dinners(size);
+        legacyFile = new File(dir, "legacy_dinners.dat");
+        snapshotFile = new File(dir, "bench_dinners.dat");
+        legacySave();
+        DinnerCodec.writeFile(snapshotFile, dinners, 0);
+        store = new DinnerStore(new File(dir, "bench").getPath());
+        dinners = store.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        store.close();
+        store.flush();
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public void legacySave() throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(legacyFile)))) {
+            oos.writeObject(new ArrayList<>(dinners));
+        }
+    }
+
+    @Benchmark
+    public Object legacyLoad() throws Exception {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(legacyFile)))) {
+            return ois.readObject();
+        }
+    }
+
+    @Benchmark
+    public void snapshotSave() throws IOException {
+        DinnerCodec.writeFile(new File(dir, "copy_dinners.dat"), dinners, 0);
+    }
+
+    @Benchmark
+    public int snapshotLoad() throws IOException {
+        DinnerStore loader = new DinnerStore(new File(dir, "bench").getPath());
+        try {
+            return loader.load().size();
+        } finally {
+            loader.close();
+        }
+    }
+
+    // One edit as the EditDinnerListener performs it, waited on until it is on disk.
+    @Benchmark
+    public void journaledEdit() throws InterruptedException {
+        int index = next++ % dinners.size();
+        Dinner edited = new Dinner("Edited " + index, "Edited in benchmark");
+        dinners.set(index, edited);
+        store.logSet(index, edited);
+        store.flush();
+    }
+}
@@ -0,0 +1,65 @@
+package dinnerapp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// The pick behind RandomDinnerListener, without the dialog, and DinnerPicker's
+// uniform, weighted, no-repeat and bulk picks.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RandomPickBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private List<Dinner> dinners;
+    private DinnerPicker uniform;
+    private DinnerPicker weighted;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final int[] picks = new int[16];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dinners = BenchmarkData.dinners(size);
+        uniform = new DinnerPicker(dinners);
+        List<Dinner> rated = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Dinner dinner = dinners.get(i);
+            rated.add(new Dinner(dinner.getName(), dinner.getDescription(), 1 + i % 5));
+        }
+        weighted = new DinnerPicker(rated);
+    }
+
+    @Benchmark
+    public Dinner randomDinner() {
+        return DinnerApp.randomDinner(dinners);
+    }
+
+    @Benchmark
+    public int uniformPick() {
+        return uniform.pick(random, 0);
+    }
+
+    @Benchmark
+    public int weightedPick() {
+        return weighted.pick(random, 0);
+    }
+
+    @Benchmark
+    public int weightedPickNoRepeat() {
+        return weighted.pick(random, 8);
+    }
+
+    @Benchmark
+    public int[] weightedBulkPick() {
+        weighted.pick(random, 0, picks);
+        return picks;
+    }
+}
@@ -0,0 +1,83 @@
+package dinnerapp;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// File helpers shared by the stores so several app instances can use the same
+// directory safely. Whole-file rewrites go to a temp file that is fsynced and then
+// renamed over the target, so readers and crashes see either the old file or the
+// new one, never a truncated mix. Writers serialize on a lock file with
+// FileChannel.lock, which covers other processes; an in-process lock per path
+// covers threads, since the JVM refuses overlapping FileLocks on the same file.
+class AtomicFiles {
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    interface Action<T> {
+        T run() throws IOException;
+    }
+
+    private static final Map<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private AtomicFiles() {
+    }
+
+    static void write(File file, Writer writer) throws IOException {
+        commit(writeTemp(file, writer), file);
+    }
+
+    // Writes and fsyncs a uniquely named temp file next to file; commit moves it
+    // into place. Splitting the two lets callers do the slow part outside a lock.
+    static File writeTemp(File file, Writer writer) throws IOException {
+        File temp = File.createTempFile(file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+        try (FileOutputStream fos = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            writer.write(out);
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        return temp;
+    }
+
+    static void commit(File temp, File file) throws IOException {
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Runs action while holding lockFile exclusively, both in this JVM and against
+    // other processes. Re-entrant for the calling thread.
+    static <T> T locked(File lockFile, Action<T> action) throws IOException {
+        ReentrantLock lock = LOCKS.computeIfAbsent(lockFile.getAbsolutePath(), path -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (lock.getHoldCount() > 1) {
+                return action.run();
+            }
+            try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock fileLock = channel.lock();
+                try {
+                    return action.run();
+                } finally {
+                    fileLock.release();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
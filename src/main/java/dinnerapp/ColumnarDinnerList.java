@@ -0,0 +1,182 @@
+package dinnerapp;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// A dinner list stored as columns: name and description ids into a StringPool,
+// plus weights only once some dinner has a weight other than 1, and creation
+// times and pick counts only once some dinner has them. A Dinner is built when
+// get() asks for it. Selected with -Ddinner.storage=columnar.
+//
+// Removed and replaced dinners' strings stay in the pool until there have been
+// more than 1024 of them and more than half the list, when the pool is rebuilt
+// from the live ids.
+class ColumnarDinnerList extends AbstractList<Dinner> implements RandomAccess {
+    private StringPool pool;
+    private int[] names;
+    private int[] descriptions;
+    private double[] weights;
+    private long[] created;
+    private int[] picks;
+    private int size;
+    private int removedSinceCompact;
+
+    ColumnarDinnerList() {
+        pool = new StringPool();
+        names = new int[10];
+        descriptions = new int[10];
+    }
+
+    ColumnarDinnerList(Collection<Dinner> dinners) {
+        this();
+        addAll(dinners);
+    }
+
+    private ColumnarDinnerList(ColumnarDinnerList other) {
+        pool = other.pool.view();
+        names = Arrays.copyOf(other.names, Math.max(10, other.size));
+        descriptions = Arrays.copyOf(other.descriptions, names.length);
+        weights = other.weights == null ? null : Arrays.copyOf(other.weights, names.length);
+        created = other.created == null ? null : Arrays.copyOf(other.created, names.length);
+        picks = other.picks == null ? null : Arrays.copyOf(other.picks, names.length);
+        size = other.size;
+    }
+
+    // Copies the id columns, not the strings, so it is cheap enough for the EDT.
+    ColumnarDinnerList copy() {
+        return new ColumnarDinnerList(this);
+    }
+
+    // Same as get(index).getWeight(), without building the dinner.
+    double weight(int index) {
+        Objects.checkIndex(index, size);
+        return weights == null ? 1 : weights[index];
+    }
+
+    // Approximate bytes held by the columns and pool, for footprint checks.
+    long byteSize() {
+        return (long) names.length * Integer.BYTES * 2 + (weights == null ? 0 : (long) weights.length * Double.BYTES)
+                + (created == null ? 0 : (long) created.length * (Long.BYTES + Integer.BYTES))
+                + pool.byteSize() + (long) pool.size() * Integer.BYTES * 3;
+    }
+
+    @Override
+    public Dinner get(int index) {
+        Objects.checkIndex(index, size);
+        String name = pool.get(names[index]);
+        String description = pool.get(descriptions[index]);
+        return new Dinner(name, description, weights == null ? 1 : weights[index],
+                created == null ? 0 : created[index], picks == null ? 0 : picks[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Dinner set(int index, Dinner dinner) {
+        Dinner old = get(index);
+        store(index, dinner);
+        compactIfStale();
+        return old;
+    }
+
+    @Override
+    public void add(int index, Dinner dinner) {
+        Objects.checkIndex(index, size + 1);
+        if (size == names.length) {
+            int capacity = Math.max(10, names.length + (names.length >> 1));
+            names = Arrays.copyOf(names, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            if (weights != null) {
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            if (created != null) {
+                created = Arrays.copyOf(created, capacity);
+                picks = Arrays.copyOf(picks, capacity);
+            }
+        }
+        System.arraycopy(names, index, names, index + 1, size - index);
+        System.arraycopy(descriptions, index, descriptions, index + 1, size - index);
+        if (weights != null) {
+            System.arraycopy(weights, index, weights, index + 1, size - index);
+        }
+        if (created != null) {
+            System.arraycopy(created, index, created, index + 1, size - index);
+            System.arraycopy(picks, index, picks, index + 1, size - index);
+        }
+        size++;
+        store(index, dinner);
+        modCount++;
+    }
+
+    @Override
+    public Dinner remove(int index) {
+        Dinner old = get(index);
+        System.arraycopy(names, index + 1, names, index, size - index - 1);
+        System.arraycopy(descriptions, index + 1, descriptions, index, size - index - 1);
+        if (weights != null) {
+            System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+        }
+        if (created != null) {
+            System.arraycopy(created, index + 1, created, index, size - index - 1);
+            System.arraycopy(picks, index + 1, picks, index, size - index - 1);
+        }
+        size--;
+        modCount++;
+        compactIfStale();
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        pool = new StringPool();
+        size = 0;
+        weights = null;
+        created = null;
+        picks = null;
+        removedSinceCompact = 0;
+        modCount++;
+    }
+
+    private void store(int index, Dinner dinner) {
+        names[index] = pool.intern(dinner.getName());
+        descriptions[index] = pool.intern(dinner.getDescription());
+        if (weights == null && dinner.getWeight() != 1) {
+            weights = new double[names.length];
+            Arrays.fill(weights, 1);
+        }
+        if (weights != null) {
+            weights[index] = dinner.getWeight();
+        }
+        if (created == null && (dinner.getCreated() != 0 || dinner.getPicks() != 0)) {
+            created = new long[names.length];
+            picks = new int[names.length];
+        }
+        if (created != null) {
+            created[index] = dinner.getCreated();
+            picks[index] = dinner.getPicks();
+        }
+    }
+
+    private void compactIfStale() {
+        if (++removedSinceCompact > Math.max(1024, size / 2)) {
+            compact();
+        }
+    }
+
+    // Re-interns the live strings into a fresh pool; copies keep the old one.
+    private void compact() {
+        StringPool old = pool;
+        pool = new StringPool();
+        for (int i = 0; i < size; i++) {
+            names[i] = pool.intern(old.get(names[i]));
+            descriptions[i] = pool.intern(old.get(descriptions[i]));
+        }
+        removedSinceCompact = 0;
+    }
+}
@@ -0,0 +1,84 @@
+package dinnerapp;
+
+import java.io.Serializable;
+
+class Dinner implements Serializable {
+    // As computed for the original two-field class, so its saved lists still load.
+    private static final long serialVersionUID = -2735711816075048452L;
+
+    private String name;
+    private String description;
+    // Relative chance of being picked at random; 1 unless the user rated it.
+    private double weight;
+    // When the dinner was first added, in epoch milliseconds; 0 if saved before
+    // this was recorded.
+    private long created;
+    // Times it was picked at random or opened from the list.
+    private int picks;
+
+    public Dinner(String name, String description) {
+        this(name, description, 1);
+    }
+
+    public Dinner(String name, String description, double weight) {
+        this(name, description, weight, System.currentTimeMillis(), 0);
+    }
+
+    public Dinner(String name, String description, double weight, long created, int picks) {
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weight must be a positive number.");
+        }
+        this.name = name;
+        this.description = description;
+        this.weight = weight;
+        this.created = created;
+        this.picks = picks;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public int getPicks() {
+        return picks;
+    }
+
+    // The same dinner renamed or redescribed, keeping its weight and history.
+    public Dinner edited(String name, String description) {
+        return new Dinner(name, description, weight, created, picks);
+    }
+
+    // The same dinner with another chance of being picked at random.
+    public Dinner weighted(double weight) {
+        return new Dinner(name, description, weight, created, picks);
+    }
+
+    public Dinner picked() {
+        return new Dinner(name, description, weight, created, picks + 1);
+    }
+
+    // Files saved before weights existed deserialize with weight 0.
+    private Object readResolve() {
+        if (weight == 0) {
+            weight = 1;
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,1142 @@
+package dinnerapp;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+class UIHelper {
+    public static void customizeLabel(JLabel label) {
+        label.setFont(new Font("Arial", Font.BOLD, 14));
+        label.setForeground(Color.BLUE);
+    }
+
+    public static void customizePanel(JPanel panel) {
+        panel.setBackground(Color.LIGHT_GRAY);
+    }
+
+    public static void customizeButton(JButton button) {
+        button.setFont(new Font("Arial", Font.PLAIN, 12));
+        button.setBackground(Color.WHITE);
+        button.setForeground(Color.DARK_GRAY);
+    }
+}
+
+public class DinnerApp extends JFrame {
+    private static final long serialVersionUID = 1L;
+
+    private List<Dinner> dinners;
+    private JTextField dinnerInput;
+    private JTextField descriptionInput;
+    private JTextField searchInput;
+    private JComboBox<DinnerSortIndex.Order> sortBox;
+    private SwingWorker<Void, int[]> searchWorker;
+    private DinnerListModel listModel;
+    private JList<Dinner> dinnerList;
+    private String currentUser;
+    private DinnerService service;
+    private JButton addButton, deleteButton, editButton, loginButton, registerButton;
+    private JMenuItem undoMenuItem, redoMenuItem;
+    private final List<JMenuItem> moveMenuItems = new ArrayList<>();
+    private JLabel welcomeLabel;
+    private JProgressBar loadingBar;
+    private boolean loading;
+    // A change is being written; editing waits for it, so changes reach the list
+    // on screen in the order they were made.
+    private boolean saving;
+    // Another instance changed the list while we were saving.
+    private boolean reloadAfterSave;
+    // Written on the EDT, read by the metrics logger.
+    private volatile int listSize;
+    private final List<Runnable> deferredWork = new ArrayList<>();
+    // The current user's changes made in this window, for Ctrl+Z and Ctrl+Y.
+    private final UndoHistory history = new UndoHistory();
+    // Shows the frame before opening the user store or decoding icons.
+    private static final boolean FAST_START = Boolean.getBoolean("dinner.fastStart");
+    // Exits once the first frame is up, for CDS training runs (mvn -Pcds package),
+    // then start with: java -XX:SharedArchiveFile=target/dinner.jsa -jar target/dinner-app.jar
+    private static final boolean EXIT_AFTER_STARTUP = Boolean.getBoolean("dinner.exitAfterStartup");
+    static final int RECENT_PICKS_TO_AVOID = 3;
+    private static final int MAX_DUPLICATES_SHOWN = 5;
+
+    public DinnerApp() {
+        if (!FAST_START) {
+            StartupTimer.phase("loadUsers");
+            loadUsers();
+        }
+        StartupTimer.phase("initUI");
+        Metrics.monitorEventQueue();
+        Metrics.gauge("listSize", () -> listSize);
+        dinners = new ArrayList<>();
+        setTitle("Dinner Manager");
+        setLayout(new BorderLayout());
+        setSize(600, 400);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        initUI();
+        setJMenuBar(createMenuBar());
+        StartupTimer.phase("setVisible");
+        setVisible(true);
+        StartupTimer.phase("firstFrame");
+        SwingUtilities.invokeLater(() -> {
+            StartupTimer.finish();
+            for (Runnable work : deferredWork) {
+                work.run();
+            }
+            deferredWork.clear();
+            if (EXIT_AFTER_STARTUP) {
+                System.exit(0);
+            }
+        });
+    }
+
+    private JMenuBar createMenuBar() {
+        JMenuBar menuBar = new JMenuBar();
+        JMenu fileMenu = new JMenu("File");
+
+        JMenuItem importMenuItem = new JMenuItem("Import Dinners...");
+        importMenuItem.addActionListener(e -> importDinners());
+        fileMenu.add(importMenuItem);
+
+        JMenuItem exportMenuItem = new JMenuItem("Export Dinners...");
+        exportMenuItem.addActionListener(e -> exportDinners());
+        fileMenu.add(exportMenuItem);
+        fileMenu.addSeparator();
+
+        JMenuItem exitMenuItem = new JMenuItem("Exit");
+        exitMenuItem.addActionListener(e -> System.exit(0));
+        fileMenu.add(exitMenuItem);
+
+        menuBar.add(fileMenu);
+
+        JMenu editMenu = new JMenu("Edit");
+        int shortcut = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        undoMenuItem = new JMenuItem("Undo");
+        undoMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, shortcut));
+        undoMenuItem.addActionListener(e -> undo());
+        editMenu.add(undoMenuItem);
+
+        redoMenuItem = new JMenuItem("Redo");
+        redoMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, shortcut));
+        redoMenuItem.addActionListener(e -> redo());
+        editMenu.add(redoMenuItem);
+
+        editMenu.addSeparator();
+        addMoveMenuItem(editMenu, "Move Up", KeyEvent.VK_UP, Move.UP);
+        addMoveMenuItem(editMenu, "Move Down", KeyEvent.VK_DOWN, Move.DOWN);
+        addMoveMenuItem(editMenu, "Move to Top", KeyEvent.VK_HOME, Move.TOP);
+        addMoveMenuItem(editMenu, "Move to Bottom", KeyEvent.VK_END, Move.BOTTOM);
+
+        editMenu.addSeparator();
+        JMenuItem duplicatesMenuItem = new JMenuItem("Find Duplicates...");
+        duplicatesMenuItem.addActionListener(e -> findDuplicates());
+        editMenu.add(duplicatesMenuItem);
+
+        menuBar.add(editMenu);
+        updateUndoState();
+        return menuBar;
+    }
+
+    private void addMoveMenuItem(JMenu menu, String text, int key, Move move) {
+        JMenuItem item = new JMenuItem(text);
+        item.setAccelerator(KeyStroke.getKeyStroke(key, InputEvent.ALT_DOWN_MASK));
+        item.addActionListener(e -> moveSelected(move));
+        menu.add(item);
+        moveMenuItems.add(item);
+    }
+
+    // Parses the file in the background behind a cancellable progress dialog, then
+    // appends everything to the user's list in one batched write.
+    private void importDinners() {
+        if (currentUser == null) {
+            JOptionPane.showMessageDialog(this, "Please log in to import dinners.");
+            return;
+        }
+        if (loading) {
+            JOptionPane.showMessageDialog(this, "Your dinners are still loading. Please try again in a moment.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Dinners (.csv or .jsonl)");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        String user = currentUser;
+        ProgressMonitor monitor = new ProgressMonitor(this, "Importing " + file.getName(), null, 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+        long length = Math.max(1, file.length());
+        SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+            protected Integer doInBackground() throws IOException {
+                List<Dinner> imported = DinnerTransfer.importFile(file, bytesRead -> {
+                    setProgress((int) Math.min(99, bytesRead * 100 / length));
+                    return !isCancelled();
+                });
+                if (isCancelled()) {
+                    return 0;
+                }
+                service().addAll(user, imported);
+                return imported.size();
+            }
+
+            protected void done() {
+                monitor.close();
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    int count = get();
+                    if (user.equals(currentUser)) {
+                        if (saving) {
+                            // Whatever is being saved goes on screen first.
+                            reloadAfterSave = true;
+                        } else {
+                            loadDinners();
+                        }
+                    }
+                    JOptionPane.showMessageDialog(DinnerApp.this, "Imported " + count + " dinners.");
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(DinnerApp.this, "Import failed: " + cause.getMessage());
+                }
+            }
+        };
+        worker.addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName())) {
+                monitor.setProgress((Integer) event.getNewValue());
+                if (monitor.isCanceled()) {
+                    worker.cancel(false);
+                }
+            }
+        });
+        worker.execute();
+    }
+
+    private void exportDinners() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export Dinners (.csv or .jsonl)");
+        chooser.setSelectedFile(new File((currentUser != null ? currentUser : "dinners") + ".csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        List<Dinner> snapshot = DinnerStore.copyOf(dinners);
+        new SwingWorker<Void, Void>() {
+            protected Void doInBackground() throws IOException {
+                DinnerTransfer.exportFile(file, snapshot);
+                return null;
+            }
+
+            protected void done() {
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(DinnerApp.this, "Exported " + snapshot.size() + " dinners.");
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(DinnerApp.this, "Export failed: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void initUI() {
+        dinnerInput = new JTextField(10);
+        descriptionInput = new JTextField(20);
+        searchInput = new JTextField(15);
+        searchInput.getDocument().addDocumentListener(new SearchListener());
+        sortBox = new JComboBox<>(DinnerSortIndex.Order.values());
+        sortBox.addActionListener(e -> sortBy((DinnerSortIndex.Order) sortBox.getSelectedItem()));
+        addButton = createButton("add.png");
+        deleteButton = createButton("delete.png");
+        editButton = createButton("edit.png");
+        JButton randomButton = createButton("random.png");
+        loginButton = new JButton("Login");
+        registerButton = new JButton("Register");
+
+        addButton.addActionListener(new AddDinnerListener());
+        deleteButton.addActionListener(new DeleteDinnerListener());
+        editButton.addActionListener(new EditDinnerListener());
+        randomButton.addActionListener(new RandomDinnerListener());
+        loginButton.addActionListener(new LoginListener());
+        registerButton.addActionListener(new RegisterListener());
+
+        listModel = new DinnerListModel();
+        dinnerList = new JList<>(listModel);
+        dinnerList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        dinnerList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), "deleteDinners");
+        dinnerList.getActionMap().put("deleteDinners", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                if (deleteButton.isEnabled()) {
+                    deleteButton.doClick();
+                }
+            }
+        });
+        dinnerList.setFixedCellHeight(dinnerList.getFontMetrics(dinnerList.getFont()).getHeight() + 4);
+        dinnerList.addMouseListener(new DinnerMouseListener());
+
+        welcomeLabel = new JLabel();
+        UIHelper.customizeLabel(welcomeLabel);  // Customize welcomeLabel
+        updateWelcomeLabel();
+
+        JPanel inputPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        UIHelper.customizePanel(inputPanel);  // Customize inputPanel
+        inputPanel.add(new JLabel("Diner:"));
+        inputPanel.add(dinnerInput);
+        inputPanel.add(new JLabel("Description:"));
+        inputPanel.add(descriptionInput);
+        inputPanel.add(new JLabel("Search:"));
+        inputPanel.add(searchInput);
+        inputPanel.add(new JLabel("Sort:"));
+        inputPanel.add(sortBox);
+
+        JPanel welcomePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        UIHelper.customizePanel(welcomePanel);  // Customize welcomePanel
+        welcomePanel.add(welcomeLabel);
+
+        loadingBar = new JProgressBar();
+        loadingBar.setIndeterminate(true);
+        loadingBar.setString("Loading dinners...");
+        loadingBar.setStringPainted(true);
+        loadingBar.setVisible(false);
+        welcomePanel.add(loadingBar);
+
+        JPanel combinedPanel = new JPanel(new BorderLayout());
+        UIHelper.customizePanel(combinedPanel);  // Customize combinedPanel
+        combinedPanel.add(inputPanel, BorderLayout.NORTH);
+        combinedPanel.add(welcomePanel, BorderLayout.SOUTH);
+
+        JPanel buttonPanel = new JPanel(new GridLayout(6, 1, 5, 5));
+        UIHelper.customizePanel(buttonPanel);  // Customize buttonPanel
+        buttonPanel.add(loginButton);
+        buttonPanel.add(registerButton);
+        buttonPanel.add(addButton);
+        buttonPanel.add(deleteButton);
+        buttonPanel.add(editButton);
+        buttonPanel.add(randomButton);
+
+        JPanel mainPanel = new JPanel(new BorderLayout());
+        UIHelper.customizePanel(mainPanel);  // Customize mainPanel
+        mainPanel.add(combinedPanel, BorderLayout.NORTH);
+        mainPanel.add(new JScrollPane(dinnerList), BorderLayout.CENTER);
+
+        add(buttonPanel, BorderLayout.WEST);
+        add(mainPanel, BorderLayout.CENTER);
+
+        customizeButtons();
+        updateButtonsState();
+        loadDefaultDinners();
+    }
+
+    private void customizeButtons() {
+        UIHelper.customizeButton(addButton);
+        UIHelper.customizeButton(deleteButton);
+        UIHelper.customizeButton(editButton);
+        UIHelper.customizeButton(loginButton);
+        UIHelper.customizeButton(registerButton);
+    }
+
+    private JButton createButton(String imagePath) {
+        JButton button = new JButton(IconCache.placeholder(50));
+        if (FAST_START) {
+            deferredWork.add(() -> IconCache.load(imagePath, 50, button::setIcon));
+        } else {
+            IconCache.load(imagePath, 50, button::setIcon);
+        }
+        button.setPreferredSize(new Dimension(50, 50));
+        button.setMaximumSize(new Dimension(50, 50));
+        button.setMinimumSize(new Dimension(50, 50));
+        button.setText(null);
+        UIHelper.customizeButton(button);  // Customize button
+        return button;
+    }
+
+    private void loadDefaultDinners() {
+        if (currentUser == null) {
+            dinners = new OverlayDinnerList(DinnerCatalog.current());
+            refreshDinnerList();
+        }
+    }
+
+    private void loadDinners() {
+        if (currentUser != null) {
+            String user = currentUser;
+            // The previous list stays up while loading; the model then updates
+            // only the rows that differ.
+            setLoading(true);
+            new SwingWorker<List<Dinner>, Void>() {
+                protected List<Dinner> doInBackground() throws IOException {
+                    return service().list(user);
+                }
+
+                protected void done() {
+                    if (!user.equals(currentUser)) {
+                        return;
+                    }
+                    try {
+                        dinners = get();
+                    } catch (Exception e) {
+                        // Leaving the previous list up would pass it off as theirs.
+                        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                        currentUser = null;
+                        history.clear();
+                        loadDefaultDinners();
+                        setLoading(false);
+                        JOptionPane.showMessageDialog(DinnerApp.this, "Could not load your dinners: " + cause.getMessage()
+                                + "\nYou have been logged out.", "Load Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    refreshDinnerList();
+                    setLoading(false);
+                }
+            }.execute();
+        } else {
+            loadDefaultDinners();
+        }
+    }
+
+    private void setLoading(boolean loading) {
+        this.loading = loading;
+        loadingBar.setVisible(loading);
+        updateButtonsState();
+    }
+
+    private void loadUsers() {
+        long start = System.nanoTime();
+        UserStore users = new UserStore(new File("admin.txt"), new File("admin.idx"));
+        try {
+            users.open();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        Metrics.record(Metrics.Op.LOAD_USERS, start);
+        service = new DinnerService(users);
+        // Another instance saved this user's dinners; show its version.
+        service.addChangeListener(user -> SwingUtilities.invokeLater(() -> {
+            if (user.equals(currentUser) && !loading) {
+                if (saving) {
+                    reloadAfterSave = true;
+                } else {
+                    reload();
+                }
+            }
+        }));
+    }
+
+    private void reload() {
+        // Recorded indexes refer to the list as it was before.
+        history.clear();
+        updateUndoState();
+        loadDinners();
+    }
+
+    // In fast-start mode the user store is opened on first login or registration.
+    // Called only off the EDT, since that reads the user index.
+    private synchronized DinnerService service() {
+        if (service == null) {
+            loadUsers();
+        }
+        return service;
+    }
+
+    // Checks the password in the background, since hashing it takes a while, and
+    // then logs the user in.
+    private void logIn(String username, String password) {
+        setAccountButtonsEnabled(false);
+        new SwingWorker<Boolean, Void>() {
+            protected Boolean doInBackground() throws IOException {
+                return service().authenticate(username, password);
+            }
+
+            protected void done() {
+                setAccountButtonsEnabled(true);
+                if (succeeded(this)) {
+                    currentUser = username;
+                    history.clear();
+                    loadDinners();
+                    JOptionPane.showMessageDialog(null, "Login successful.");
+                } else {
+                    JOptionPane.showMessageDialog(null, "Invalid username or password.", "Login Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // Hashes the password and saves the account in the background.
+    private void register(String username, String password) {
+        setAccountButtonsEnabled(false);
+        new SwingWorker<Boolean, Void>() {
+            protected Boolean doInBackground() throws IOException {
+                return service().register(username, password);
+            }
+
+            protected void done() {
+                setAccountButtonsEnabled(true);
+                if (succeeded(this)) {
+                    JOptionPane.showMessageDialog(null, "Registration successful.");
+                } else {
+                    JOptionPane.showMessageDialog(null, "Username already exists.", "Registration Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // Whether a finished login or registration worker returned true; one that
+    // failed counts as false.
+    private static boolean succeeded(SwingWorker<Boolean, Void> worker) {
+        try {
+            return worker.get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void setAccountButtonsEnabled(boolean enabled) {
+        loginButton.setEnabled(enabled);
+        registerButton.setEnabled(enabled);
+    }
+
+    private void refreshDinnerList() {
+        long start = System.nanoTime();
+        listModel.setDinners(dinners);
+        listSize = dinners.size();
+        if (isSearching()) {
+            runSearch();
+        }
+        if (currentUser != null) {
+            // Index for duplicate warnings now, so the first add finds it built.
+            duplicateIndex();
+        }
+        Metrics.record(Metrics.Op.REFRESH_LIST, start);
+    }
+
+    // The duplicate index, being built in the background if it is not yet;
+    // checks made before it is built find nothing.
+    private DinnerDuplicateIndex duplicateIndex() {
+        DinnerDuplicateIndex index = listModel.prepareDuplicates();
+        if (!index.isBuilt()) {
+            new SwingWorker<Void, Void>() {
+                protected Void doInBackground() {
+                    index.warm();
+                    return null;
+                }
+            }.execute();
+        }
+        return index;
+    }
+
+    // Asks before adding or saving a dinner that looks like one already on the
+    // list, other than the one at except (-1 for none). Returns true to go ahead.
+    private boolean confirmNotDuplicate(Dinner dinner, int except) {
+        long start = System.nanoTime();
+        int[] matches = duplicateIndex().duplicatesOf(dinner, except);
+        Metrics.record(Metrics.Op.CHECK_DUPLICATE, start);
+        if (matches.length == 0) {
+            return true;
+        }
+        StringBuilder message = new StringBuilder("\"" + dinner.getName() + "\" looks like a dinner already on your list:");
+        for (int i = 0; i < Math.min(matches.length, MAX_DUPLICATES_SHOWN); i++) {
+            message.append("\n    ").append(dinners.get(matches[i]).getName());
+        }
+        if (matches.length > MAX_DUPLICATES_SHOWN) {
+            message.append("\n    and ").append(matches.length - MAX_DUPLICATES_SHOWN).append(" more");
+        }
+        message.append("\nSave it anyway?");
+        int confirm = JOptionPane.showConfirmDialog(this, message.toString(), "Possible Duplicate", JOptionPane.YES_NO_OPTION);
+        return confirm == JOptionPane.YES_OPTION;
+    }
+
+    // Groups the whole list's duplicates in the background and lists the groups.
+    private void findDuplicates() {
+        if (dinners.isEmpty()) {
+            return;
+        }
+        List<Dinner> snapshot = DinnerStore.copyOf(dinners);
+        new SwingWorker<List<int[]>, Void>() {
+            protected List<int[]> doInBackground() {
+                long start = System.nanoTime();
+                List<int[]> clusters = DinnerDuplicateIndex.clusters(snapshot);
+                Metrics.record(Metrics.Op.FIND_DUPLICATES, start);
+                return clusters;
+            }
+
+            protected void done() {
+                List<int[]> clusters;
+                try {
+                    clusters = get();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return;
+                }
+                if (clusters.isEmpty()) {
+                    JOptionPane.showMessageDialog(DinnerApp.this, "No duplicate dinners found.");
+                    return;
+                }
+                StringBuilder text = new StringBuilder();
+                for (int[] cluster : clusters) {
+                    for (int index : cluster) {
+                        Dinner dinner = snapshot.get(index);
+                        text.append(dinner.getName());
+                        if (!dinner.getDescription().isEmpty()) {
+                            text.append(" - ").append(dinner.getDescription());
+                        }
+                        text.append('\n');
+                    }
+                    text.append('\n');
+                }
+                JTextArea area = new JTextArea(text.toString().trim(), 15, 40);
+                area.setEditable(false);
+                area.setCaretPosition(0);
+                String title = clusters.size() == 1 ? "1 Group of Duplicates" : clusters.size() + " Groups of Duplicates";
+                JOptionPane.showMessageDialog(DinnerApp.this, new JScrollPane(area), title, JOptionPane.INFORMATION_MESSAGE);
+            }
+        }.execute();
+    }
+
+    // Keeps the first selected dinner selected and in view across the switch.
+    private void sortBy(DinnerSortIndex.Order order) {
+        int row = dinnerList.getSelectedIndex();
+        int index = row >= 0 ? listModel.toListIndex(row) : -1;
+        listModel.setOrder(order);
+        dinnerList.clearSelection();
+        if (index >= 0) {
+            row = listModel.toRow(index);
+            if (row >= 0) {
+                dinnerList.setSelectedIndex(row);
+                dinnerList.ensureIndexIsVisible(row);
+            }
+        }
+    }
+
+    private boolean isSearching() {
+        return !searchInput.getText().trim().isEmpty();
+    }
+
+    private void runSearch() {
+        if (searchWorker != null) {
+            searchWorker.cancel(false);
+            searchWorker = null;
+        }
+        String query = searchInput.getText().trim();
+        if (query.isEmpty()) {
+            listModel.setFilter(null);
+            return;
+        }
+        DinnerSearchIndex index = listModel.prepareSearch();
+        listModel.setFilter(new int[0]);
+        searchWorker = new SearchWorker(index, query);
+        searchWorker.execute();
+    }
+
+    // Applies a change to the user's stored list and then to the list on screen,
+    // as one journal write, and records it for undo. Calls done with whether it
+    // was applied.
+    private void perform(String label, List<DinnerEdit> edits, Consumer<Boolean> done) {
+        applyEdits(edits, applied -> {
+            if (applied != null) {
+                history.record(label, applied);
+                updateUndoState();
+            }
+            done.accept(applied != null);
+        });
+    }
+
+    private void perform(String label, List<DinnerEdit> edits) {
+        perform(label, edits, applied -> { });
+    }
+
+    // Writes the edits in the background, since that waits for the disk, then
+    // applies them to the list on screen. Calls done with the edits as applied, or
+    // with null if they were not.
+    private void applyEdits(List<DinnerEdit> edits, Consumer<List<DinnerEdit>> done) {
+        String user = currentUser;
+        save(() -> service().apply(user, edits), applied -> {
+            if (applied != null && !loading) {
+                listModel.apply(applied);
+                listSize = dinners.size();
+                if (isSearching()) {
+                    runSearch();
+                }
+            }
+            done.accept(applied);
+        });
+    }
+
+    private interface Write<T> {
+        T run() throws IOException;
+    }
+
+    private <T> void save(Write<T> write, Consumer<T> done) {
+        save(write, done, true);
+    }
+
+    // Runs write in the background with editing disabled, then calls done on the
+    // EDT with its result, or with null if it failed. Nothing is called if the user
+    // logged out meanwhile. A failed write reloads the list and says why; so does a
+    // conflict with another instance's change, though silently unless
+    // reportConflict. If another instance changed the list
+    // while writing, the list is reloading when done runs and done should not
+    // touch it.
+    private <T> void save(Write<T> write, Consumer<T> done, boolean reportConflict) {
+        String user = currentUser;
+        setSaving(true);
+        new SwingWorker<T, Void>() {
+            protected T doInBackground() throws IOException {
+                return write.run();
+            }
+
+            protected void done() {
+                setSaving(false);
+                if (!user.equals(currentUser)) {
+                    return;
+                }
+                T result = null;
+                try {
+                    result = get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IllegalStateException) {
+                        // Another instance changed the list; show its version instead.
+                        reloadAfterSave = false;
+                        reload();
+                        if (reportConflict) {
+                            JOptionPane.showMessageDialog(DinnerApp.this, e.getCause().getMessage(), "Edit Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                        done.accept(null);
+                        return;
+                    }
+                    // Part of it may have reached the disk; show the list as saved.
+                    reloadAfterSave = false;
+                    reload();
+                    JOptionPane.showMessageDialog(DinnerApp.this, "Could not save your change: " + e.getCause().getMessage(),
+                            "Save Error", JOptionPane.ERROR_MESSAGE);
+                    done.accept(null);
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (reloadAfterSave) {
+                    // The list on screen is out of date; done leaves it to the
+                    // reload, which includes this change.
+                    reloadAfterSave = false;
+                    reload();
+                }
+                done.accept(result);
+            }
+        }.execute();
+    }
+
+    private void setSaving(boolean saving) {
+        this.saving = saving;
+        updateButtonsState();
+    }
+
+    // Whether the list on screen is the user's and can be changed now.
+    private boolean editable() {
+        return currentUser != null && !loading && !saving;
+    }
+
+    private void undo() {
+        if (!editable()) {
+            return;
+        }
+        history.undo((edits, done) -> applyEdits(edits, applied -> {
+            done.accept(applied != null);
+            updateUndoState();
+        }));
+        updateUndoState();
+    }
+
+    private void redo() {
+        if (!editable()) {
+            return;
+        }
+        history.redo((edits, done) -> applyEdits(edits, applied -> {
+            done.accept(applied != null);
+            updateUndoState();
+        }));
+        updateUndoState();
+    }
+
+    private void updateUndoState() {
+        if (undoMenuItem == null) {
+            return;
+        }
+        boolean editable = editable();
+        String undoLabel = history.undoLabel();
+        String redoLabel = history.redoLabel();
+        undoMenuItem.setText(undoLabel != null ? "Undo " + undoLabel : "Undo");
+        undoMenuItem.setEnabled(editable && undoLabel != null);
+        redoMenuItem.setText(redoLabel != null ? "Redo " + redoLabel : "Redo");
+        redoMenuItem.setEnabled(editable && redoLabel != null);
+        for (JMenuItem item : moveMenuItems) {
+            item.setEnabled(editable);
+        }
+    }
+
+    // List positions of the selected rows, in list order.
+    private int[] selectedIndexes() {
+        int[] rows = dinnerList.getSelectedIndices();
+        int[] indexes = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            indexes[i] = listModel.toListIndex(rows[i]);
+        }
+        Arrays.sort(indexes);
+        return indexes;
+    }
+
+    // Removals for the given ascending positions, last first so each index is
+    // still valid when its turn comes.
+    private List<DinnerEdit> removals(int[] indexes) {
+        List<DinnerEdit> edits = new ArrayList<>(indexes.length);
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            edits.add(DinnerEdit.remove(indexes[i], dinners.get(indexes[i])));
+        }
+        return edits;
+    }
+
+    private enum Move { UP, DOWN, TOP, BOTTOM }
+
+    // Moves the selected dinners, as one block in their current order, one row
+    // up or down past their neighbours, or to either end of the list.
+    private void moveSelected(Move move) {
+        if (!editable()) {
+            return;
+        }
+        if (isSearching()) {
+            JOptionPane.showMessageDialog(this, "Clear the search to move dinners.");
+            return;
+        }
+        if (listModel.getOrder() != DinnerSortIndex.Order.LIST) {
+            JOptionPane.showMessageDialog(this, "Sort by list order to move dinners.");
+            return;
+        }
+        int[] indexes = selectedIndexes();
+        int count = indexes.length;
+        if (count == 0) {
+            return;
+        }
+        int remaining = dinners.size() - count;
+        int target;
+        switch (move) {
+            case UP:
+                target = Math.max(0, indexes[0] - 1);
+                break;
+            case DOWN:
+                // Unselected dinners up to the last selected one, plus one more.
+                target = Math.min(remaining, indexes[count - 1] + 2 - count);
+                break;
+            case TOP:
+                target = 0;
+                break;
+            default:
+                target = remaining;
+        }
+        if (indexes[0] == target && indexes[count - 1] == target + count - 1) {
+            return;
+        }
+        List<DinnerEdit> edits = removals(indexes);
+        for (int i = 0; i < count; i++) {
+            edits.add(DinnerEdit.insert(target + i, dinners.get(indexes[i])));
+        }
+        int first = target;
+        perform(count == 1 ? "Move" : "Move " + count + " Dinners", edits, applied -> {
+            if (applied) {
+                dinnerList.setSelectionInterval(first, first + count - 1);
+                dinnerList.ensureIndexIsVisible(first);
+            }
+        });
+    }
+
+    private void updateButtonsState() {
+        boolean loggedIn = currentUser != null;
+        boolean editable = editable();
+        addButton.setEnabled(editable);
+        deleteButton.setEnabled(editable);
+        editButton.setEnabled(editable);
+        updateUndoState();
+        loginButton.setText(loggedIn ? "Logout" : "Login");
+        registerButton.setVisible(!loggedIn); // Hide register button if logged in
+        updateWelcomeLabel();
+        if (!loggedIn) {
+            loadDefaultDinners();
+        }
+    }
+
+    private void updateWelcomeLabel() {
+        if (currentUser == null) {
+            welcomeLabel.setText("Welcome! Please log in to manage your diners.");
+        } else {
+            welcomeLabel.setText("Welcome, " + currentUser + "! What dinner would you like to eat today?");
+        }
+    }
+
+    private class AddDinnerListener implements ActionListener {
+        public void actionPerformed(ActionEvent e) {
+            String dinnerName = dinnerInput.getText();
+            String description = descriptionInput.getText();
+            if (!dinnerName.isEmpty()) {
+                Dinner dinner = new Dinner(dinnerName, description);
+                if (!confirmNotDuplicate(dinner, -1)) {
+                    return;
+                }
+                perform("Add", List.of(DinnerEdit.insert(dinners.size(), dinner)));
+                dinnerInput.setText("");
+                descriptionInput.setText("");
+            }
+        }
+    }
+
+    private class DeleteDinnerListener implements ActionListener {
+        public void actionPerformed(ActionEvent e) {
+            int[] indexes = selectedIndexes();
+            if (indexes.length > 0) {
+                String question = indexes.length == 1 ? "Are you sure you want to delete this dinner?"
+                        : "Are you sure you want to delete these " + indexes.length + " dinners?";
+                int confirm = JOptionPane.showConfirmDialog(null, question, "Delete Confirmation", JOptionPane.YES_NO_OPTION);
+                if (confirm == JOptionPane.YES_OPTION) {
+                    perform(indexes.length == 1 ? "Delete" : "Delete " + indexes.length + " Dinners", removals(indexes));
+                    dinnerList.clearSelection();
+                }
+            }
+        }
+    }
+
+    private class EditDinnerListener implements ActionListener {
+        public void actionPerformed(ActionEvent e) {
+            int[] indexes = selectedIndexes();
+            if (indexes.length > 1) {
+                editDescriptions(indexes);
+            } else if (indexes.length == 1) {
+                int selectedIndex = indexes[0];
+                Dinner dinner = dinners.get(selectedIndex);
+                JTextField dinnerField = new JTextField(dinner.getName(), 10);
+                JTextField descriptionField = new JTextField(dinner.getDescription(), 20);
+
+                JPanel panel = new JPanel(new GridLayout(2, 2));
+                panel.add(new JLabel("Diner:"));
+                panel.add(dinnerField);
+                panel.add(new JLabel("Description:"));
+                panel.add(descriptionField);
+
+                int result = JOptionPane.showConfirmDialog(null, panel, "Edit Dinner", JOptionPane.OK_CANCEL_OPTION);
+                if (result == JOptionPane.OK_OPTION) {
+                    String newDinnerName = dinnerField.getText();
+                    String newDescription = descriptionField.getText();
+                    if (!newDinnerName.isEmpty()) {
+                        Dinner edited = dinner.edited(newDinnerName, newDescription);
+                        boolean renamed = !newDinnerName.equals(dinner.getName()) || !newDescription.equals(dinner.getDescription());
+                        if (renamed && !confirmNotDuplicate(edited, selectedIndex)) {
+                            return;
+                        }
+                        perform("Edit", List.of(DinnerEdit.set(selectedIndex, dinner, edited)));
+                    }
+                }
+            }
+        }
+    }
+
+    // Gives every selected dinner the same description, as one change.
+    private void editDescriptions(int[] indexes) {
+        JTextField descriptionField = new JTextField(dinners.get(indexes[0]).getDescription(), 20);
+        JPanel panel = new JPanel(new GridLayout(1, 2));
+        panel.add(new JLabel("Description:"));
+        panel.add(descriptionField);
+
+        String title = "Edit Description of " + indexes.length + " Dinners";
+        int result = JOptionPane.showConfirmDialog(null, panel, title, JOptionPane.OK_CANCEL_OPTION);
+        if (result == JOptionPane.OK_OPTION) {
+            String description = descriptionField.getText();
+            List<DinnerEdit> edits = new ArrayList<>(indexes.length);
+            for (int index : indexes) {
+                Dinner dinner = dinners.get(index);
+                if (!dinner.getDescription().equals(description)) {
+                    edits.add(DinnerEdit.set(index, dinner, dinner.edited(dinner.getName(), description)));
+                }
+            }
+            if (!edits.isEmpty()) {
+                perform("Edit " + edits.size() + " Dinners", edits);
+            }
+        }
+    }
+
+    private class RandomDinnerListener implements ActionListener {
+        public void actionPerformed(ActionEvent e) {
+            if (!dinners.isEmpty()) {
+                if (editable()) {
+                    pickForUser();
+                } else {
+                    showRandomDinner(randomDinner(dinners));
+                }
+            }
+        }
+    }
+
+    private void showRandomDinner(Dinner dinner) {
+        JOptionPane.showMessageDialog(null, "Random Diner: " + dinner.getName() + "\nDescription: " + dinner.getDescription());
+    }
+
+    // Weighted, and avoids the user's last few picks so repeated clicks vary.
+    // The pick is counted, for the Most picked order, but not recorded for undo.
+    private void pickForUser() {
+        String user = currentUser;
+        save(() -> service().pick(user, RECENT_PICKS_TO_AVOID), edit -> {
+            if (edit != null) {
+                if (!loading) {
+                    listModel.apply(List.of(edit));
+                }
+                showRandomDinner(edit.after);
+            } else if (!dinners.isEmpty()) {
+                showRandomDinner(randomDinner(dinners));
+            }
+        });
+    }
+
+    // Like applyEdits, but a pick count changes nothing a search matches and is
+    // not undone, so neither is touched.
+    private void countPick(int index, Dinner dinner) {
+        List<DinnerEdit> edits = List.of(DinnerEdit.set(index, dinner, dinner.picked()));
+        String user = currentUser;
+        save(() -> service().apply(user, edits), applied -> {
+            if (applied != null && !loading) {
+                listModel.apply(applied);
+            }
+        }, false);
+    }
+
+    static Dinner randomDinner(List<Dinner> dinners) {
+        return dinners.get(ThreadLocalRandom.current().nextInt(dinners.size()));
+    }
+
+    private class LoginListener implements ActionListener {
+        public void actionPerformed(ActionEvent e) {
+            if (currentUser != null) {
+                int confirm = JOptionPane.showConfirmDialog(null, "Are you sure you want to log out?", "Logout Confirmation", JOptionPane.YES_NO_OPTION);
+                if (confirm == JOptionPane.YES_OPTION) {
+                    // The user's list stays in the service cache, so logging
+                    // back in does not re-read their file.
+                    currentUser = null;
+                    history.clear();
+                    loadDefaultDinners();
+                    setLoading(false);
+                    JOptionPane.showMessageDialog(null, "Logged out successfully.");
+                }
+            } else {
+                JTextField usernameField = new JTextField(10);
+                JPasswordField passwordField = new JPasswordField(10);
+
+                JPanel panel = new JPanel(new GridLayout(2, 2));
+                panel.add(new JLabel("Username:"));
+                panel.add(usernameField);
+                panel.add(new JLabel("Password:"));
+                panel.add(passwordField);
+
+                int result = JOptionPane.showConfirmDialog(null, panel, "Login", JOptionPane.OK_CANCEL_OPTION);
+                if (result == JOptionPane.OK_OPTION) {
+                    String username = usernameField.getText();
+                    String password = new String(passwordField.getPassword());
+                    logIn(username, password);
+                }
+            }
+        }
+    }
+
+    private class RegisterListener implements ActionListener {
+        public void actionPerformed(ActionEvent e) {
+            JTextField usernameField = new JTextField(10);
+            JPasswordField passwordField = new JPasswordField(10);
+
+            JPanel panel = new JPanel(new GridLayout(2, 2));
+            panel.add(new JLabel("Username:"));
+            panel.add(usernameField);
+            panel.add(new JLabel("Password:"));
+            panel.add(passwordField);
+
+            int result = JOptionPane.showConfirmDialog(null, panel, "Register", JOptionPane.OK_CANCEL_OPTION);
+            if (result == JOptionPane.OK_OPTION) {
+                String username = usernameField.getText();
+                String password = new String(passwordField.getPassword());
+                if (!username.isEmpty() && !password.isEmpty()) {
+                    if (!UserStore.isValidUsername(username)) {
+                        JOptionPane.showMessageDialog(null, "Usernames may use only letters, digits, '_', '-' and '.', and cannot start with '.' or contain \"..\".", "Registration Error", JOptionPane.ERROR_MESSAGE);
+                    } else {
+                        register(username, password);
+                    }
+                } else {
+                    JOptionPane.showMessageDialog(null, "Username or password cannot be empty.", "Registration Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }
+    }
+
+    private class SearchListener implements DocumentListener {
+        public void insertUpdate(DocumentEvent e) {
+            runSearch();
+        }
+
+        public void removeUpdate(DocumentEvent e) {
+            runSearch();
+        }
+
+        public void changedUpdate(DocumentEvent e) {
+            runSearch();
+        }
+    }
+
+    // Queries the index off the EDT and streams matches into the list in batches.
+    private class SearchWorker extends SwingWorker<Void, int[]> {
+        private static final int BATCH_SIZE = 500;
+        private final DinnerSearchIndex index;
+        private final String query;
+
+        SearchWorker(DinnerSearchIndex index, String query) {
+            this.index = index;
+            this.query = query;
+        }
+
+        protected Void doInBackground() {
+            int[] matches = index.search(query);
+            for (int from = 0; from < matches.length && !isCancelled(); from += BATCH_SIZE) {
+                publish(Arrays.copyOfRange(matches, from, Math.min(matches.length, from + BATCH_SIZE)));
+            }
+            return null;
+        }
+
+        protected void process(List<int[]> batches) {
+            if (searchWorker != this) {
+                return;
+            }
+            for (int[] batch : batches) {
+                listModel.appendFilter(batch);
+            }
+        }
+    }
+
+    private class DinnerMouseListener extends MouseAdapter {
+        public void mouseClicked(MouseEvent e) {
+            if (e.getClickCount() == 2) {
+                int selectedIndex = dinnerList.getSelectedIndex();
+                if (selectedIndex != -1) {
+                    Dinner dinner = listModel.getElementAt(selectedIndex);
+                    if (editable()) {
+                        // Opening a dinner counts as picking it.
+                        countPick(listModel.toListIndex(selectedIndex), dinner);
+                    }
+                    JOptionPane.showMessageDialog(null, "Diner: " + dinner.getName() + "\nDescription: " + dinner.getDescription());
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        StartupTimer.phase("toolkit");
+        SwingUtilities.invokeLater(DinnerApp::new);
+    }
+}
@@ -0,0 +1,265 @@
+package dinnerapp;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Per-user cache of loaded dinner lists. Users hash onto a fixed set of lock
+// stripes, so work for unrelated users only contends when they share a stripe.
+// The cache is bounded both by number of users and by total dinners; when either
+// limit is exceeded the least recently used user is evicted and its store closed,
+// which writes back any journal records still queued for it. A user whose files
+// another instance changes is dropped too, so the next access reloads them; a
+// write that finds them changed first reloads them itself, under the lock file,
+// and runs against the fresh list.
+class DinnerCache {
+    static final int DEFAULT_MAX_USERS = Integer.getInteger("dinner.cache.maxUsers", 1024);
+    static final long DEFAULT_MAX_DINNERS = Long.getLong("dinner.cache.maxDinners", 5_000_000L);
+    static final int DEFAULT_STRIPES = 64;
+
+    interface Action<T> {
+        T apply(UserDinners user) throws IOException;
+    }
+
+    // One cached user. Actions may use the fields only while they run.
+    static final class UserDinners {
+        final DinnerStore store;
+        final List<Dinner> dinners;
+        final DinnerPicker picker;
+        private volatile long lastAccess;
+        private int size;
+        private boolean dirty;
+
+        private UserDinners(DinnerStore store, List<Dinner> dinners) {
+            this.store = store;
+            this.dinners = dinners;
+            this.picker = new DinnerPicker(dinners);
+            this.size = dinners.size();
+        }
+    }
+
+    private final Map<String, UserDinners> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes;
+    private final int maxUsers;
+    private final long maxDinners;
+    private final AtomicLong totalDinners = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder writeBacks = new LongAdder();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    DinnerCache() {
+        this(DEFAULT_MAX_USERS, DEFAULT_MAX_DINNERS, DEFAULT_STRIPES);
+    }
+
+    DinnerCache(int maxUsers, long maxDinners, int stripeCount) {
+        this.maxUsers = maxUsers;
+        this.maxDinners = maxDinners;
+        stripes = new ReentrantLock[Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    <T> T read(String user, Action<T> action) throws IOException {
+        return access(user, action, false);
+    }
+
+    <T> T write(String user, Action<T> action) throws IOException {
+        return access(user, action, true);
+    }
+
+    // Evicts the user now, writing back anything queued for it.
+    void invalidate(String user) {
+        ReentrantLock lock = stripe(user);
+        lock.lock();
+        try {
+            UserDinners entry = entries.remove(user);
+            if (entry != null) {
+                close(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the username, on a background thread or the thread of a write
+    // that found it out, when a cached list was dropped or reloaded because
+    // another instance changed it.
+    void addChangeListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    void invalidateAll() {
+        for (String user : entries.keySet()) {
+            invalidate(user);
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    long writeBacks() {
+        return writeBacks.sum();
+    }
+
+    int users() {
+        return entries.size();
+    }
+
+    long dinners() {
+        return totalDinners.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DinnerCache[users=" + users() + ", dinners=" + dinners() + ", hits=" + hits()
+                + ", misses=" + misses() + ", evictions=" + evictions() + ", writeBacks=" + writeBacks() + "]";
+    }
+
+    private <T> T access(String user, Action<T> action, boolean mutates) throws IOException {
+        ReentrantLock lock = stripe(user);
+        T result;
+        boolean reloaded = false;
+        lock.lock();
+        try {
+            UserDinners entry = entries.get(user);
+            if (entry == null) {
+                misses.increment();
+                entry = load(user);
+            } else {
+                hits.increment();
+            }
+            entry.lastAccess = System.nanoTime();
+            if (mutates) {
+                UserDinners cached = entry;
+                try {
+                    result = cached.store.change(() -> {
+                        if (!cached.store.changedExternally()) {
+                            return action.apply(cached);
+                        }
+                        // Another instance wrote since we loaded; its changes
+                        // would be lost under ours, so apply ours to its list.
+                        entries.remove(user);
+                        close(cached);
+                        UserDinners current = load(user);
+                        return current.store.change(() -> action.apply(current));
+                    });
+                } catch (IOException e) {
+                    // The list may hold a change that never reached the disk.
+                    UserDinners changed = entries.remove(user);
+                    if (changed != null) {
+                        close(changed);
+                    }
+                    throw e;
+                } finally {
+                    reloaded = entries.get(user) != cached;
+                }
+                entry = entries.get(user);
+                entry.dirty = true;
+                int size = entry.dinners.size();
+                totalDinners.addAndGet(size - entry.size);
+                entry.size = size;
+            } else {
+                result = action.apply(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (reloaded) {
+            for (Consumer<String> listener : listeners) {
+                listener.accept(user);
+            }
+        }
+        // Evict only after releasing our stripe, so two threads never wait on each
+        // other's stripes.
+        evictIfNeeded(user);
+        return result;
+    }
+
+    // Caller holds the user's stripe lock.
+    private UserDinners load(String user) throws IOException {
+        DinnerStore store = new DinnerStore(user);
+        UserDinners entry = new UserDinners(store, store.load());
+        store.onExternalChange(() -> externalChange(user, entry));
+        entries.put(user, entry);
+        totalDinners.addAndGet(entry.size);
+        return entry;
+    }
+
+    private void evictIfNeeded(String keep) {
+        while (entries.size() > maxUsers || (totalDinners.get() > maxDinners && entries.size() > 1)) {
+            String victim = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<String, UserDinners> e : entries.entrySet()) {
+                if (!e.getKey().equals(keep) && e.getValue().lastAccess < oldest) {
+                    oldest = e.getValue().lastAccess;
+                    victim = e.getKey();
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            ReentrantLock lock = stripe(victim);
+            lock.lock();
+            try {
+                UserDinners entry = entries.get(victim);
+                if (entry != null && entry.lastAccess == oldest) {
+                    entries.remove(victim);
+                    evictions.increment();
+                    close(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void externalChange(String user, UserDinners changed) {
+        ReentrantLock lock = stripe(user);
+        lock.lock();
+        try {
+            if (entries.get(user) != changed) {
+                return;
+            }
+            entries.remove(user);
+            close(changed);
+        } finally {
+            lock.unlock();
+        }
+        for (Consumer<String> listener : listeners) {
+            listener.accept(user);
+        }
+    }
+
+    // Caller holds the entry's stripe lock. Returns once the store has written
+    // everything queued for it, so the user's next access loads it all.
+    private void close(UserDinners entry) {
+        totalDinners.addAndGet(-entry.size);
+        if (entry.dirty) {
+            writeBacks.increment();
+        }
+        entry.store.close();
+    }
+
+    private ReentrantLock stripe(String user) {
+        int h = user.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+}
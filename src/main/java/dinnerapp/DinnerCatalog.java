@@ -0,0 +1,145 @@
+package dinnerapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+// The dinners every new user starts with, shared by all of them. A user's list is
+// an OverlayDinnerList over a catalog, so their own file holds only what they
+// changed. A catalog never changes once saved: it is written as catalog-<id>.dat,
+// the id being the CRC-32 of its contents, and lists saved against it keep
+// reading that file after a newer catalog ships.
+//
+// The current catalog is the built-in one, or a snapshot file named by
+// -Ddinner.catalog. Catalog files are memory-mapped and decoded lazily, so
+// instances sharing the directory share their pages, and each is loaded at most
+// once per process.
+final class DinnerCatalog {
+    private static final Dinner[] BUILT_IN = {
+        new Dinner("McDonalds", "Fast food restaurant", 1, 0, 0),
+        new Dinner("KFC", "Fast food restaurant that specializing in fried chicken", 1, 0, 0),
+        new Dinner("Pizza Hut", "Pizza restaurant ", 1, 0, 0)
+    };
+
+    private static final Map<Integer, DinnerCatalog> LOADED = new ConcurrentHashMap<>();
+
+    final int id;
+    private final List<Dinner> dinners;
+    // Where save() copies the catalog from: the file, or the encoded built-in.
+    private final File source;
+    private final byte[] encoded;
+    private volatile boolean saved;
+
+    private DinnerCatalog(int id, List<Dinner> dinners, File source, byte[] encoded) {
+        this.id = id;
+        this.dinners = dinners;
+        this.source = source;
+        this.encoded = encoded;
+    }
+
+    private static final class Current {
+        static final DinnerCatalog INSTANCE = load();
+
+        private static DinnerCatalog load() {
+            String path = System.getProperty("dinner.catalog");
+            if (path != null) {
+                try {
+                    return map(new File(path));
+                } catch (IOException e) {
+                    System.err.println("Cannot read dinner catalog " + path + "; using the built-in one");
+                    e.printStackTrace();
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                DinnerCodec.write(new DataOutputStream(bytes), List.of(BUILT_IN), 0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            byte[] encoded = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(encoded);
+            return new DinnerCatalog((int) crc.getValue(), List.of(BUILT_IN), null, encoded);
+        }
+    }
+
+    static DinnerCatalog current() {
+        return Current.INSTANCE;
+    }
+
+    // The catalog a list was saved against, mapping its file the first time.
+    static DinnerCatalog forId(int id) throws IOException {
+        DinnerCatalog current = current();
+        if (current.id == id) {
+            return current;
+        }
+        DinnerCatalog catalog = LOADED.get(id);
+        if (catalog == null) {
+            catalog = map(fileFor(id));
+            if (catalog.id != id) {
+                throw new IOException(fileFor(id) + " is corrupt");
+            }
+            catalog.saved = true;
+            DinnerCatalog raced = LOADED.putIfAbsent(id, catalog);
+            if (raced != null) {
+                catalog = raced;
+            }
+        }
+        return catalog;
+    }
+
+    private static DinnerCatalog map(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            crc.update(buffer);
+            Metrics.bytesRead(channel.size());
+        }
+        return new DinnerCatalog((int) crc.getValue(), new MappedDinnerList(file), file, null);
+    }
+
+    static File fileFor(int id) {
+        return new File(String.format("catalog-%08x.dat", id));
+    }
+
+    // Writes catalog-<id>.dat unless it exists, so lists saved against this
+    // catalog can find it again.
+    void save() throws IOException {
+        if (saved) {
+            return;
+        }
+        File file = fileFor(id);
+        if (!file.exists()) {
+            AtomicFiles.write(file, out -> {
+                if (encoded != null) {
+                    out.write(encoded);
+                } else {
+                    Files.copy(source.toPath(), out);
+                }
+            });
+            Metrics.bytesWritten(file.length());
+        }
+        saved = true;
+    }
+
+    int size() {
+        return dinners.size();
+    }
+
+    Dinner get(int index) {
+        return dinners.get(index);
+    }
+
+    double weight(int index) {
+        return dinners instanceof MappedDinnerList ? ((MappedDinnerList) dinners).weight(index) : dinners.get(index).getWeight();
+    }
+}
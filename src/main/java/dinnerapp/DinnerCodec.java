@@ -0,0 +1,349 @@
+package dinnerapp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+// Binary format for dinner snapshots:
+//
+//   header: int magic ("DINR"), short version, long epoch, int record count
+//   record: int body length, then name and description as (int length, UTF-8 bytes),
+//           then a double weight if it is not 1, then a long creation time and
+//           an int pick count if either is known
+//
+// Records are length-prefixed so a reader can skip from one to the next without
+// decoding the strings. The trailing fields are optional so lists saved before
+// they existed still read, with weight 1 and no history; when the creation time
+// or pick count is written, the weight is written too. Readers skip anything
+// past the fields they know.
+//
+// A list kept as an OverlayDinnerList is saved as its runs instead:
+//
+//   header: int magic ("DINO"), short version, long epoch, int run count,
+//           int catalog id
+//   run:    int catalog index of its first dinner, then an int dinner count;
+//           or -1 and then a record as above, for one of the user's own dinners
+class DinnerCodec {
+    static final int MAGIC = 0x44494E52;
+    static final int OVERLAY_MAGIC = 0x44494E4F;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES + Integer.BYTES;
+    static final int COUNT_OFFSET = HEADER_SIZE - Integer.BYTES;
+    static final int EPOCH_OFFSET = Integer.BYTES + Short.BYTES;
+    // Weight, creation time and pick count.
+    private static final int HISTORY_TRAILER = Double.BYTES + Long.BYTES + Integer.BYTES;
+
+    private static final short LEGACY_MAGIC = (short) 0xACED;
+
+    static class Snapshot {
+        final ArrayList<Dinner> dinners;
+        final long epoch;
+
+        Snapshot(ArrayList<Dinner> dinners, long epoch) {
+            this.dinners = dinners;
+            this.epoch = epoch;
+        }
+    }
+
+    static void write(DataOutputStream out, List<Dinner> dinners, long epoch) throws IOException {
+        if (dinners instanceof OverlayDinnerList) {
+            writeOverlay(out, (OverlayDinnerList) dinners, epoch);
+            return;
+        }
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(epoch);
+        out.writeInt(dinners.size());
+        for (Dinner dinner : dinners) {
+            writeDinner(out, dinner);
+        }
+    }
+
+    private static void writeOverlay(DataOutputStream out, OverlayDinnerList overlay, long epoch) throws IOException {
+        out.writeInt(OVERLAY_MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(epoch);
+        out.writeInt(overlay.runs());
+        out.writeInt(overlay.catalog().id);
+        for (int run = 0; run < overlay.runs(); run++) {
+            Dinner dinner = overlay.ownDinner(run);
+            if (dinner != null) {
+                out.writeInt(-1);
+                writeDinner(out, dinner);
+            } else {
+                out.writeInt(overlay.catalogStart(run));
+                out.writeInt(overlay.catalogCount(run));
+            }
+        }
+    }
+
+    static void writeDinner(DataOutputStream out, Dinner dinner) throws IOException {
+        byte[] name = dinner.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] description = dinner.getDescription().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(2 * Integer.BYTES + name.length + description.length + trailerLength(dinner));
+        out.writeInt(name.length);
+        out.write(name);
+        out.writeInt(description.length);
+        out.write(description);
+        if (hasHistory(dinner) || dinner.getWeight() != 1) {
+            out.writeDouble(dinner.getWeight());
+        }
+        if (hasHistory(dinner)) {
+            out.writeLong(dinner.getCreated());
+            out.writeInt(dinner.getPicks());
+        }
+    }
+
+    private static boolean hasHistory(Dinner dinner) {
+        return dinner.getCreated() != 0 || dinner.getPicks() != 0;
+    }
+
+    private static int trailerLength(Dinner dinner) {
+        if (hasHistory(dinner)) {
+            return HISTORY_TRAILER;
+        }
+        return dinner.getWeight() != 1 ? Double.BYTES : 0;
+    }
+
+    // Reads a record body of the given length; the caller has already consumed
+    // its length prefix.
+    static Dinner readBody(DataInputStream in, int bodyLength) throws IOException {
+        String name = readString(in);
+        String description = readString(in);
+        int remaining = bodyLength - 2 * Integer.BYTES - utf8Length(name) - utf8Length(description);
+        double weight = 1;
+        long created = 0;
+        int picks = 0;
+        if (remaining >= Double.BYTES) {
+            weight = in.readDouble();
+            remaining -= Double.BYTES;
+        }
+        if (remaining >= Long.BYTES + Integer.BYTES) {
+            created = in.readLong();
+            picks = in.readInt();
+            remaining -= Long.BYTES + Integer.BYTES;
+        }
+        in.skipNBytes(remaining);
+        return new Dinner(name, description, weight, created, picks);
+    }
+
+    // Size of a record as written by writeDinner, including its length prefix.
+    static int encodedLength(Dinner dinner) {
+        return 3 * Integer.BYTES + utf8Length(dinner.getName()) + utf8Length(dinner.getDescription())
+                + trailerLength(dinner);
+    }
+
+    static void checkHeader(ByteBuffer buf) throws IOException {
+        if (buf.remaining() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a dinner snapshot");
+        }
+        if (buf.getShort(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported dinner snapshot version " + buf.getShort(Integer.BYTES));
+        }
+    }
+
+    static Snapshot read(ByteBuffer buf) throws IOException {
+        checkHeader(buf);
+        ArrayList<Dinner> dinners = new ArrayList<>(buf.getInt(COUNT_OFFSET));
+        return new Snapshot(dinners, readInto(buf, dinners));
+    }
+
+    // Decodes every record into dinners and returns the snapshot's epoch.
+    static long readInto(ByteBuffer buf, List<Dinner> dinners) throws IOException {
+        checkHeader(buf);
+        int count = buf.getInt(COUNT_OFFSET);
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            dinners.add(decode(buf, offset));
+            offset += Integer.BYTES + buf.getInt(offset);
+        }
+        return buf.getLong(EPOCH_OFFSET);
+    }
+
+    // Reads a list saved as an overlay, loading the catalog it was saved against.
+    static OverlayDinnerList readOverlay(ByteBuffer buf) throws IOException {
+        if (buf.remaining() < HEADER_SIZE + Integer.BYTES || buf.getInt(0) != OVERLAY_MAGIC) {
+            throw new IOException("Not a dinner overlay");
+        }
+        if (buf.getShort(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported dinner overlay version " + buf.getShort(Integer.BYTES));
+        }
+        int runs = buf.getInt(COUNT_OFFSET);
+        OverlayDinnerList overlay = new OverlayDinnerList(DinnerCatalog.forId(buf.getInt(HEADER_SIZE)));
+        overlay.clear();
+        int offset = HEADER_SIZE + Integer.BYTES;
+        for (int run = 0; run < runs; run++) {
+            int start = buf.getInt(offset);
+            offset += Integer.BYTES;
+            if (start < 0) {
+                overlay.appendOwn(decode(buf, offset));
+                offset += Integer.BYTES + buf.getInt(offset);
+            } else {
+                overlay.appendRange(start, buf.getInt(offset));
+                offset += Integer.BYTES;
+            }
+        }
+        return overlay;
+    }
+
+    // Decodes the record starting at offset without moving the buffer's position.
+    static Dinner decode(ByteBuffer buf, int offset) {
+        int nameOffset = offset + Integer.BYTES;
+        int nameLength = buf.getInt(nameOffset);
+        int descriptionOffset = nameOffset + Integer.BYTES + nameLength;
+        int descriptionLength = buf.getInt(descriptionOffset);
+        int end = offset + Integer.BYTES + buf.getInt(offset);
+        int trailerOffset = descriptionOffset + Integer.BYTES + descriptionLength;
+        double weight = end - trailerOffset >= Double.BYTES ? buf.getDouble(trailerOffset) : 1;
+        long created = 0;
+        int picks = 0;
+        if (end - trailerOffset >= HISTORY_TRAILER) {
+            created = buf.getLong(trailerOffset + Double.BYTES);
+            picks = buf.getInt(trailerOffset + Double.BYTES + Long.BYTES);
+        }
+        return new Dinner(decodeString(buf, nameOffset + Integer.BYTES, nameLength),
+                decodeString(buf, descriptionOffset + Integer.BYTES, descriptionLength), weight, created, picks);
+    }
+
+    // Reads just the weight of the record at offset, without decoding its strings.
+    static double weight(ByteBuffer buf, int offset) {
+        int end = offset + Integer.BYTES + buf.getInt(offset);
+        int nameOffset = offset + Integer.BYTES;
+        int descriptionOffset = nameOffset + Integer.BYTES + buf.getInt(nameOffset);
+        int weightOffset = descriptionOffset + Integer.BYTES + buf.getInt(descriptionOffset);
+        return end - weightOffset >= Double.BYTES ? buf.getDouble(weightOffset) : 1;
+    }
+
+    static boolean isOverlay(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == OVERLAY_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    static boolean isLegacy(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readShort() == LEGACY_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    // Reads a snapshot written with ObjectOutputStream by older versions of the app.
+    static Snapshot readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new LegacyInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            ArrayList<Dinner> dinners = new ArrayList<>();
+            for (Object dinner : (ArrayList<?>) ois.readObject()) {
+                dinners.add((Dinner) dinner);
+            }
+            long epoch;
+            try {
+                epoch = ois.readLong();
+            } catch (IOException e) {
+                epoch = 0;
+            }
+            return new Snapshot(dinners, epoch);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // The first versions of the app had Dinner in the default package.
+    private static final class LegacyInputStream extends ObjectInputStream {
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (desc.getName().equals("Dinner")) {
+                return Dinner.class;
+            }
+            return super.resolveClass(desc);
+        }
+    }
+
+    static Snapshot readFile(File file) throws IOException {
+        if (isLegacy(file)) {
+            return readLegacy(file);
+        }
+        return read(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    static void writeFile(File file, List<Dinner> dinners, long epoch) throws IOException {
+        AtomicFiles.write(file, out -> write(out, dinners, epoch));
+    }
+
+    // Epoch from a snapshot's header, or 0 if the file is missing or not a snapshot.
+    static long readEpoch(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            int magic = in.readInt();
+            if (magic != MAGIC && magic != OVERLAY_MAGIC) {
+                return 0;
+            }
+            in.readShort();
+            return in.readLong();
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    // Rewrites any Java-serialized *_dinners.dat files in dir in the binary format.
+    static void migrateAll(File dir) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith("_dinners.dat"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (isLegacy(file)) {
+                Snapshot snapshot = readLegacy(file);
+                writeFile(file, snapshot.dinners, snapshot.epoch);
+                System.out.println("Migrated " + file.getName() + " (" + snapshot.dinners.size() + " dinners)");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        migrateAll(new File(args.length > 0 ? args[0] : "."));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String decodeString(ByteBuffer buf, int offset, int length) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
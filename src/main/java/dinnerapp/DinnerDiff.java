@@ -0,0 +1,126 @@
+package dinnerapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Shortest edit script between two dinner lists (Myers' O((N+M)D) algorithm),
+// comparing dinners by name and description. Common leading and trailing runs
+// are trimmed first, so the usual case of a few edits costs one pass to find them
+// plus work proportional to the edits themselves.
+class DinnerDiff {
+    // One run of edits: old positions [oldStart, oldEnd) become new positions
+    // [newStart, newEnd). Positions are in each list's own coordinates.
+    static final class Hunk {
+        int oldStart;
+        int oldEnd;
+        int newStart;
+        int newEnd;
+
+        Hunk(int oldPosition, int newPosition) {
+            oldStart = oldEnd = oldPosition;
+            newStart = newEnd = newPosition;
+        }
+    }
+
+    private DinnerDiff() {
+    }
+
+    // Returns the hunks in order, or null if the lists differ by more than
+    // maxEdits insertions and removals, when a full reload is cheaper anyway.
+    static List<Hunk> diff(List<Dinner> oldList, List<Dinner> newList, int maxEdits) {
+        int prefix = 0;
+        int oldEnd = oldList.size();
+        int newEnd = newList.size();
+        while (prefix < oldEnd && prefix < newEnd && same(oldList.get(prefix), newList.get(prefix))) {
+            prefix++;
+        }
+        while (oldEnd > prefix && newEnd > prefix && same(oldList.get(oldEnd - 1), newList.get(newEnd - 1))) {
+            oldEnd--;
+            newEnd--;
+        }
+        int n = oldEnd - prefix;
+        int m = newEnd - prefix;
+        if (Math.abs(n - m) > maxEdits) {
+            return null;
+        }
+        if (n == 0 && m == 0) {
+            return Collections.emptyList();
+        }
+        if (n == 0 || m == 0) {
+            Hunk hunk = new Hunk(prefix, prefix);
+            hunk.oldEnd = oldEnd;
+            hunk.newEnd = newEnd;
+            return n + m > maxEdits ? null : Collections.singletonList(hunk);
+        }
+        return myers(oldList.subList(prefix, oldEnd), newList.subList(prefix, newEnd), prefix, maxEdits);
+    }
+
+    static boolean same(Dinner a, Dinner b) {
+        return a == b || (a.getName().equals(b.getName()) && a.getDescription().equals(b.getDescription()));
+    }
+
+    private static List<Hunk> myers(List<Dinner> a, List<Dinner> b, int offset, int maxEdits) {
+        int n = a.size();
+        int m = b.size();
+        int max = Math.min(n + m, maxEdits);
+        // v[k + max + 1] is the furthest x reached on diagonal k = x - y.
+        int zero = max + 1;
+        int[] v = new int[2 * max + 3];
+        // trace.get(d) holds v for diagonals -(d + 1)..(d + 1) as it was before step d.
+        List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= max; d++) {
+            int[] snapshot = new int[2 * d + 3];
+            System.arraycopy(v, zero - d - 1, snapshot, 0, snapshot.length);
+            trace.add(snapshot);
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && v[zero + k - 1] < v[zero + k + 1]) ? v[zero + k + 1] : v[zero + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && same(a.get(x), b.get(y))) {
+                    x++;
+                    y++;
+                }
+                v[zero + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, n, m, offset);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<Hunk> backtrack(List<int[]> trace, int n, int m, int offset) {
+        List<Hunk> hunks = new ArrayList<>();
+        Hunk current = null;
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d > 0; d--) {
+            int[] v = trace.get(d);
+            int base = d + 1;
+            int k = x - y;
+            int prevK = k == -d || (k != d && v[base + k - 1] < v[base + k + 1]) ? k + 1 : k - 1;
+            int prevX = v[base + prevK];
+            int prevY = prevX - prevK;
+            int midX = prevK == k + 1 ? prevX : prevX + 1;
+            if (x > midX && current != null) {
+                hunks.add(current);
+                current = null;
+            }
+            if (current == null) {
+                current = new Hunk(offset + midX, offset + midX - k);
+            }
+            if (prevK == k + 1) {
+                current.newStart--;
+            } else {
+                current.oldStart--;
+            }
+            x = prevX;
+            y = prevY;
+        }
+        if (current != null) {
+            hunks.add(current);
+        }
+        Collections.reverse(hunks);
+        return hunks;
+    }
+}
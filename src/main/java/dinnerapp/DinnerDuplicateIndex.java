@@ -0,0 +1,611 @@
+package dinnerapp;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Finds dinners that are probably the same one entered twice, like "Pizza Hut",
+// "pizza hut " and "PizzaHut". Names are compared as sets of three-character
+// shingles after dropping case, accents, spaces and punctuation; descriptions as
+// sets of words. Two dinners are duplicates if their names' Jaccard similarity
+// reaches THRESHOLD, or, when both have a description, if the name similarity
+// counted twice plus the description similarity averages THRESHOLD. Names with
+// different numbers in them, like "Table 12" and "Table 13", are never duplicates.
+//
+// Candidates come from locality-sensitive hashing: each name gets a MinHash
+// signature of BANDS * ROWS hashes, and dinners sharing all ROWS hashes of any
+// band, and the same numbers, land in the same bucket. So a check only verifies
+// the few dinners sharing a bucket instead of comparing against the whole list.
+//
+// Kept like DinnerSearchIndex: dormant until prepared, entries get a fresh id
+// whenever they change, stale ids in the buckets are skipped when candidates are
+// verified, and the buckets are rebuilt once stale ids outnumber live ones. The
+// prepared list is indexed by warm() outside the lock; until that is published,
+// checks find nothing and mutations are queued, so the EDT never waits on it.
+class DinnerDuplicateIndex {
+    static final double THRESHOLD = 0.5;
+    private static final int BANDS = 20;
+    private static final int ROWS = 3;
+    private static final int MIN_REBUILD_GARBAGE = 1024;
+    // The MinHash functions, h(x) = (a * x + b) >>> 32 with a odd.
+    private static final long[] MULTIPLIERS = new SplittableRandom(0x5EED).longs(BANDS * ROWS).map(a -> a | 1).toArray();
+    private static final long[] ADDENDS = new SplittableRandom(0xADD).longs(BANDS * ROWS).toArray();
+
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    // A dinner's sorted, distinct shingle hashes, a hash of the digits in its
+    // name, and its band keys.
+    private static final class Shingles {
+        final int[] name;
+        final int[] description;
+        final long digits;
+        final int[] bands;
+
+        Shingles(Dinner dinner) {
+            name = nameShingles(dinner.getName());
+            description = wordShingles(dinner.getDescription());
+            digits = digits(dinner.getName());
+            bands = bands(name, digits);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Shingles)) {
+                return false;
+            }
+            Shingles other = (Shingles) o;
+            return digits == other.digits && Arrays.equals(name, other.name) && Arrays.equals(description, other.description);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(digits) * 31 * 31 + Arrays.hashCode(name) * 31 + Arrays.hashCode(description);
+        }
+    }
+
+    // The ids posted under each band key, without boxing: chains of entries,
+    // newest first, hashed by key into heads. Keys sharing a chain are told apart
+    // by the key kept in each entry.
+    private static final class Buckets {
+        private int[] heads = emptyHeads(16);
+        private int[] keys = new int[16];
+        private int[] ids = new int[16];
+        private int[] next = new int[16];
+        private int entries;
+
+        void add(int key, int id) {
+            int newest = first(key);
+            if (newest >= 0 && ids[newest] == id) {
+                return;
+            }
+            if (entries == ids.length) {
+                keys = Arrays.copyOf(keys, entries * 2);
+                ids = Arrays.copyOf(ids, entries * 2);
+                next = Arrays.copyOf(next, entries * 2);
+            }
+            if (entries == heads.length) {
+                heads = emptyHeads(heads.length * 2);
+                for (int entry = 0; entry < entries; entry++) {
+                    link(entry);
+                }
+            }
+            keys[entries] = key;
+            ids[entries] = id;
+            link(entries++);
+        }
+
+        // The newest entry under key, or -1; follow next() to the older ones.
+        int first(int key) {
+            int entry = heads[key & (heads.length - 1)];
+            while (entry >= 0 && keys[entry] != key) {
+                entry = next[entry];
+            }
+            return entry;
+        }
+
+        int next(int entry) {
+            int key = keys[entry];
+            do {
+                entry = next[entry];
+            } while (entry >= 0 && keys[entry] != key);
+            return entry;
+        }
+
+        int id(int entry) {
+            return ids[entry];
+        }
+
+        void clear() {
+            heads = emptyHeads(16);
+            keys = new int[16];
+            ids = new int[16];
+            next = new int[16];
+            entries = 0;
+        }
+
+        private void link(int entry) {
+            int slot = keys[entry] & (heads.length - 1);
+            next[entry] = heads[slot];
+            heads[slot] = entry;
+        }
+
+        private static int[] emptyHeads(int capacity) {
+            int[] heads = new int[capacity];
+            Arrays.fill(heads, -1);
+            return heads;
+        }
+    }
+
+    private Buckets buckets = new Buckets();
+    private IntList positions = new IntList();
+    private Shingles[] entries = new Shingles[16];
+    // The list position of each live id, so matches map back without a scan.
+    private int[] positionOf = new int[16];
+    private int nextId;
+    private int garbage;
+    private boolean built;
+    private List<Dinner> pendingBuild;
+    // Set while warm() indexes pendingBuild outside the lock.
+    private boolean building;
+    private List<Runnable> queued = new ArrayList<>();
+
+    synchronized boolean isPrepared() {
+        return built || pendingBuild != null;
+    }
+
+    synchronized boolean isBuilt() {
+        return built;
+    }
+
+    // Hands over a private copy of the current list, to be indexed by warm().
+    synchronized void prepare(List<Dinner> copy) {
+        if (!built && pendingBuild == null) {
+            pendingBuild = copy;
+        }
+    }
+
+    // Indexes a prepared list, off the EDT, and publishes it along with the
+    // mutations queued meanwhile. Waits for a warm() already in progress.
+    void warm() {
+        List<Dinner> copy;
+        synchronized (this) {
+            while (building) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (pendingBuild == null) {
+                return;
+            }
+            building = true;
+            copy = pendingBuild;
+        }
+        DinnerDuplicateIndex fresh = new DinnerDuplicateIndex();
+        boolean indexed = false;
+        try {
+            for (Dinner dinner : copy) {
+                fresh.positions.add(fresh.index(new Shingles(dinner)));
+            }
+            fresh.placeFrom(0);
+            indexed = true;
+        } finally {
+            synchronized (this) {
+                // Unless reset() dropped the list meanwhile.
+                if (indexed && pendingBuild == copy) {
+                    buckets = fresh.buckets;
+                    positions = fresh.positions;
+                    entries = fresh.entries;
+                    positionOf = fresh.positionOf;
+                    nextId = fresh.nextId;
+                    garbage = 0;
+                    pendingBuild = null;
+                    built = true;
+                    for (Runnable mutation : queued) {
+                        mutation.run();
+                    }
+                    queued.clear();
+                }
+                building = false;
+                notifyAll();
+            }
+        }
+    }
+
+    synchronized void reset() {
+        built = false;
+        pendingBuild = null;
+        queued.clear();
+        clear();
+    }
+
+    synchronized void added(Dinner dinner) {
+        apply(() -> {
+            positions.add(index(new Shingles(dinner)));
+            placeFrom(positions.size - 1);
+        });
+    }
+
+    synchronized void inserted(int position, Dinner dinner) {
+        apply(() -> {
+            positions.add(0);
+            System.arraycopy(positions.values, position, positions.values, position + 1, positions.size - position - 1);
+            positions.values[position] = index(new Shingles(dinner));
+            placeFrom(position);
+        });
+    }
+
+    synchronized void changed(int position, Dinner dinner) {
+        apply(() -> {
+            release(positions.values[position]);
+            int id = index(new Shingles(dinner));
+            positions.values[position] = id;
+            positionOf[id] = position;
+            compactIfNeeded();
+        });
+    }
+
+    synchronized void removed(int position) {
+        apply(() -> {
+            release(positions.values[position]);
+            System.arraycopy(positions.values, position + 1, positions.values, position, positions.size - position - 1);
+            positions.size--;
+            placeFrom(position);
+            compactIfNeeded();
+        });
+    }
+
+    // Returns the list positions of dinners that look like duplicates of dinner,
+    // in list order, leaving out the one at except (-1 for none). Finds none
+    // until warm() has published the index.
+    synchronized int[] duplicatesOf(Dinner dinner, int except) {
+        if (!built) {
+            return new int[0];
+        }
+        Shingles shingles = new Shingles(dinner);
+        int skip = except >= 0 && except < positions.size ? positions.values[except] : -1;
+        // Ids already verified, as most candidates turn up in several bands.
+        BitSet seen = null;
+        IntList matches = new IntList();
+        for (int key : shingles.bands) {
+            for (int entry = buckets.first(key); entry >= 0; entry = buckets.next(entry)) {
+                int id = buckets.id(entry);
+                if (id == skip || entries[id] == null) {
+                    continue;
+                }
+                if (seen == null) {
+                    seen = new BitSet(nextId);
+                } else if (seen.get(id)) {
+                    continue;
+                }
+                seen.set(id);
+                if (similar(shingles, entries[id])) {
+                    matches.add(positionOf[id]);
+                }
+            }
+        }
+        int[] result = Arrays.copyOf(matches.values, matches.size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    // Groups the list's duplicates, each group being the list positions of two or
+    // more dinners in ascending order, and the groups ordered by their first
+    // position. A dinner joins a group by being a duplicate of any dinner in it.
+    // Shingles are computed and candidates verified in parallel.
+    static List<int[]> clusters(List<Dinner> dinners) {
+        int size = dinners.size();
+        Shingles[] all = new Shingles[size];
+        Parallel.forEach(0, size, i -> all[i] = new Shingles(dinners.get(i)));
+        // Dinners that normalize the same are duplicates outright, so only the
+        // first of them goes through the buckets; a list holding many copies of
+        // one dinner would otherwise verify every pair of them.
+        int[] parent = new int[size];
+        Map<Shingles, Integer> firsts = new HashMap<>();
+        Buckets index = new Buckets();
+        for (int i = 0; i < size; i++) {
+            Integer first = firsts.putIfAbsent(all[i], i);
+            parent[i] = first != null ? first : i;
+            if (first == null) {
+                for (int key : all[i].bands) {
+                    index.add(key, i);
+                }
+            }
+        }
+        // Each dinner verifies the later dinners it shares a bucket with, which
+        // come first in its chains.
+        int[][] links = new int[size][];
+        Parallel.forEach(0, size, i -> {
+            if (parent[i] != i) {
+                return;
+            }
+            IntList candidates = new IntList();
+            for (int key : all[i].bands) {
+                for (int entry = index.first(key); entry >= 0 && index.id(entry) > i; entry = index.next(entry)) {
+                    candidates.add(index.id(entry));
+                }
+            }
+            int[] sorted = Arrays.copyOf(candidates.values, candidates.size);
+            Arrays.sort(sorted);
+            IntList similar = new IntList();
+            for (int k = 0; k < sorted.length; k++) {
+                if ((k == 0 || sorted[k] != sorted[k - 1]) && similar(all[i], all[sorted[k]])) {
+                    similar.add(sorted[k]);
+                }
+            }
+            links[i] = similar.size == 0 ? null : Arrays.copyOf(similar.values, similar.size);
+        });
+        for (int i = 0; i < size; i++) {
+            if (links[i] != null) {
+                for (int j : links[i]) {
+                    union(parent, i, j);
+                }
+            }
+        }
+        // Roots are the smallest position in their group, so sorting the members
+        // by root and then position lists the groups in order.
+        int[] members = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = find(parent, i);
+            members[parent[i]]++;
+        }
+        IntList grouped = new IntList();
+        for (int i = 0; i < size; i++) {
+            if (members[parent[i]] > 1) {
+                grouped.add(i);
+            }
+        }
+        long[] keys = new long[grouped.size];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = (long) parent[grouped.values[k]] << 32 | grouped.values[k];
+        }
+        Arrays.sort(keys);
+        List<int[]> clusters = new ArrayList<>();
+        for (int from = 0; from < keys.length; ) {
+            int to = from + 1;
+            while (to < keys.length && keys[to] >>> 32 == keys[from] >>> 32) {
+                to++;
+            }
+            int[] cluster = new int[to - from];
+            for (int k = from; k < to; k++) {
+                cluster[k - from] = (int) keys[k];
+            }
+            clusters.add(cluster);
+            from = to;
+        }
+        return clusters;
+    }
+
+    // Keeps the smaller position as the root.
+    private static void union(int[] parent, int a, int b) {
+        a = find(parent, a);
+        b = find(parent, b);
+        if (a < b) {
+            parent[b] = a;
+        } else if (b < a) {
+            parent[a] = b;
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    // Mutations wait in the queue while the prepared list is indexed, and are
+    // dropped while the index is dormant.
+    private void apply(Runnable mutation) {
+        if (built) {
+            mutation.run();
+        } else if (pendingBuild != null) {
+            queued.add(mutation);
+        }
+    }
+
+    private void clear() {
+        buckets.clear();
+        positions.size = 0;
+        Arrays.fill(entries, null);
+        nextId = 0;
+        garbage = 0;
+    }
+
+    private int index(Shingles shingles) {
+        int id = nextId++;
+        if (id == entries.length) {
+            entries = Arrays.copyOf(entries, id * 2);
+            positionOf = Arrays.copyOf(positionOf, id * 2);
+        }
+        entries[id] = shingles;
+        for (int key : shingles.bands) {
+            buckets.add(key, id);
+        }
+        return id;
+    }
+
+    // Records where the ids from position to the end of the list now are.
+    private void placeFrom(int position) {
+        for (int p = position; p < positions.size; p++) {
+            positionOf[positions.values[p]] = p;
+        }
+    }
+
+    private void release(int id) {
+        entries[id] = null;
+        garbage++;
+    }
+
+    private void compactIfNeeded() {
+        if (garbage < MIN_REBUILD_GARBAGE || garbage < positions.size) {
+            return;
+        }
+        Shingles[] old = entries;
+        int[] oldIds = Arrays.copyOf(positions.values, positions.size);
+        entries = new Shingles[Math.max(16, oldIds.length)];
+        positionOf = new int[entries.length];
+        buckets.clear();
+        positions.size = 0;
+        nextId = 0;
+        garbage = 0;
+        for (int oldId : oldIds) {
+            positions.add(index(old[oldId]));
+        }
+        placeFrom(0);
+    }
+
+    private static boolean similar(Shingles a, Shingles b) {
+        if (a.digits != b.digits) {
+            return false;
+        }
+        double name = jaccard(a.name, b.name);
+        if (name >= THRESHOLD) {
+            return true;
+        }
+        if (a.description.length == 0 || b.description.length == 0) {
+            return false;
+        }
+        return (2 * name + jaccard(a.description, b.description)) / 3 >= THRESHOLD;
+    }
+
+    // Of two sorted arrays of distinct values.
+    private static double jaccard(int[] a, int[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return 0;
+        }
+        int shared = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                shared++;
+                i++;
+                j++;
+            }
+        }
+        return (double) shared / (a.length + b.length - shared);
+    }
+
+    // Lower case letters and digits only, accents stripped: "Café-Nero " is "cafenero".
+    private static String normalize(String text, boolean keepSpaces) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD).toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            } else if (keepSpaces && Character.isWhitespace(c) && normalized.length() > 0
+                    && normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        return normalized.toString();
+    }
+
+    // Three-character shingles of the name between start and end markers, so a
+    // name of one or two characters still has some.
+    private static int[] nameShingles(String name) {
+        String normalized = normalize(name, false);
+        if (normalized.isEmpty()) {
+            return new int[0];
+        }
+        String marked = "^" + normalized + "$";
+        int[] shingles = new int[marked.length() - 2];
+        for (int i = 0; i < shingles.length; i++) {
+            long packed = (long) marked.charAt(i) << 32 | (long) marked.charAt(i + 1) << 16 | marked.charAt(i + 2);
+            shingles[i] = (int) mix(packed);
+        }
+        return distinct(shingles);
+    }
+
+    private static long digits(String name) {
+        long hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            int digit = Character.digit(name.charAt(i), 10);
+            if (digit >= 0) {
+                hash = hash * 31 + digit + 1;
+            }
+        }
+        return hash;
+    }
+
+    private static int[] wordShingles(String description) {
+        String normalized = normalize(description, true).trim();
+        if (normalized.isEmpty()) {
+            return new int[0];
+        }
+        String[] words = normalized.split(" ");
+        int[] shingles = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            shingles[i] = (int) mix(words[i].hashCode());
+        }
+        return distinct(shingles);
+    }
+
+    private static int[] distinct(int[] values) {
+        Arrays.sort(values);
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                values[count++] = values[i];
+            }
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    // The MinHash signature, ROWS hashes to a band, each band hashed to one key
+    // that also encodes the band number and the name's digits. A name without
+    // shingles gets no keys, so it is never a candidate.
+    private static int[] bands(int[] shingles, long digits) {
+        if (shingles.length == 0) {
+            return new int[0];
+        }
+        int[] keys = new int[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = digits * BANDS + band;
+            for (int row = 0; row < ROWS; row++) {
+                long a = MULTIPLIERS[band * ROWS + row];
+                long b = ADDENDS[band * ROWS + row];
+                long min = Long.MAX_VALUE;
+                for (int shingle : shingles) {
+                    min = Math.min(min, (a * (shingle & 0xFFFFFFFFL) + b) >>> 32);
+                }
+                key = key * 0x9E3779B97F4A7C15L + min;
+            }
+            keys[band] = (int) mix(key);
+        }
+        return keys;
+    }
+
+    // The finalizer of MurmurHash3's 64-bit hash.
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE53A87CDL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,124 @@
+package dinnerapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// One step of a change to a dinner list: insert, replace or remove the dinner at
+// an index. A change is a list of edits applied in order (see
+// DinnerService.apply); each edit remembers the dinner it replaces or removes, so
+// the change can be undone and can tell when the list no longer matches it.
+final class DinnerEdit {
+    enum Kind { INSERT, SET, REMOVE }
+
+    final Kind kind;
+    final int index;
+    // The dinner at index before the edit; null for INSERT.
+    final Dinner before;
+    // The dinner at index after the edit; null for REMOVE.
+    final Dinner after;
+
+    private DinnerEdit(Kind kind, int index, Dinner before, Dinner after) {
+        this.kind = kind;
+        this.index = index;
+        this.before = before;
+        this.after = after;
+    }
+
+    static DinnerEdit insert(int index, Dinner dinner) {
+        return new DinnerEdit(Kind.INSERT, index, null, dinner);
+    }
+
+    static DinnerEdit set(int index, Dinner before, Dinner after) {
+        return new DinnerEdit(Kind.SET, index, before, after);
+    }
+
+    static DinnerEdit remove(int index, Dinner before) {
+        return new DinnerEdit(Kind.REMOVE, index, before, null);
+    }
+
+    DinnerEdit inverse() {
+        switch (kind) {
+            case INSERT:
+                return remove(index, after);
+            case SET:
+                return set(index, after, before);
+            default:
+                return insert(index, before);
+        }
+    }
+
+    // The change that undoes edits: each edit inverted, last first.
+    static List<DinnerEdit> inverse(List<DinnerEdit> edits) {
+        List<DinnerEdit> inverse = new ArrayList<>(edits.size());
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            inverse.add(edits.get(i).inverse());
+        }
+        return inverse;
+    }
+
+    // This edit as it should apply to dinners now. Picks are counted without
+    // recording an edit, so a replacement that leaves the pick count alone, e.g. a
+    // rename or its undo, takes the count the dinner has now instead of the one it
+    // had when the edit was made.
+    DinnerEdit rebasedOn(List<Dinner> dinners) {
+        if (kind != Kind.SET || before.getPicks() != after.getPicks() || index >= dinners.size()) {
+            return this;
+        }
+        Dinner current = dinners.get(index);
+        if (current.getPicks() == after.getPicks() || !matches(current, before)) {
+            return this;
+        }
+        Dinner replacement = new Dinner(after.getName(), after.getDescription(), after.getWeight(), after.getCreated(), current.getPicks());
+        return set(index, current, replacement);
+    }
+
+    // Throws IllegalStateException, leaving dinners unchanged, if the dinner at
+    // index is not the one this edit expects.
+    void applyTo(List<Dinner> dinners) {
+        if (kind == Kind.INSERT) {
+            if (index > dinners.size()) {
+                throw conflict();
+            }
+            dinners.add(index, after);
+            return;
+        }
+        if (index >= dinners.size() || !matches(dinners.get(index), before)) {
+            throw conflict();
+        }
+        if (kind == Kind.SET) {
+            dinners.set(index, after);
+        } else {
+            dinners.remove(index);
+        }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(kind.ordinal());
+        out.writeInt(index);
+        if (before != null) {
+            DinnerCodec.writeDinner(out, before);
+        }
+        if (after != null) {
+            DinnerCodec.writeDinner(out, after);
+        }
+    }
+
+    static DinnerEdit read(DataInputStream in) throws IOException {
+        Kind kind = Kind.values()[in.readByte()];
+        int index = in.readInt();
+        Dinner before = kind == Kind.INSERT ? null : DinnerCodec.readBody(in, in.readInt());
+        Dinner after = kind == Kind.REMOVE ? null : DinnerCodec.readBody(in, in.readInt());
+        return new DinnerEdit(kind, index, before, after);
+    }
+
+    private static boolean matches(Dinner actual, Dinner expected) {
+        return DinnerDiff.same(actual, expected) && actual.getWeight() == expected.getWeight();
+    }
+
+    private static IllegalStateException conflict() {
+        return new IllegalStateException("The dinner list has changed since this edit.");
+    }
+}
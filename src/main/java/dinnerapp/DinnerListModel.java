@@ -0,0 +1,343 @@
+package dinnerapp;
+
+import javax.swing.AbstractListModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// List model that reads straight from the dinner list instead of copying it, and
+// fires events only for the rows a mutation touches. While a search filter is
+// set, rows map to list positions through the filter's view. Replacing the list
+// fires events for just the rows that differ, so the JList keeps its scroll
+// position and selection across reloads.
+//
+// With a sorted order set, rows follow that order instead of the list's, through
+// a DinnerSortIndex; a search filter's view is kept in the same order.
+class DinnerListModel extends AbstractListModel<Dinner> {
+    private static final long serialVersionUID = 1L;
+
+    // Past this many inserted and removed rows, replacing the list resets it.
+    static final int MAX_DIFF_EDITS = 1000;
+
+    private List<Dinner> dinners = new ArrayList<>();
+    private final DinnerSearchIndex searchIndex = new DinnerSearchIndex();
+    private final DinnerDuplicateIndex duplicateIndex = new DinnerDuplicateIndex();
+    private final DinnerSortIndex sortIndex = new DinnerSortIndex();
+    private int[] view;
+    private int viewSize;
+
+    void setDinners(List<Dinner> dinners) {
+        int oldSize = getSize();
+        boolean sorted = sortIndex.isSorted();
+        List<DinnerDiff.Hunk> hunks = view == null && !sorted ? DinnerDiff.diff(this.dinners, dinners, MAX_DIFF_EDITS) : null;
+        this.dinners = dinners;
+        view = null;
+        searchIndex.reset();
+        duplicateIndex.reset();
+        sortIndex.reset();
+        if (sorted) {
+            sortIndex.setOrder(sortIndex.order(), dinners);
+        }
+        if (hunks != null) {
+            fireHunks(hunks);
+            return;
+        }
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (!dinners.isEmpty()) {
+            fireIntervalAdded(this, 0, dinners.size() - 1);
+        }
+    }
+
+    void add(Dinner dinner) {
+        int index = dinners.size();
+        dinners.add(dinner);
+        searchIndex.added(dinner);
+        duplicateIndex.added(dinner);
+        sortIndex.inserted(index, dinner);
+        if (view == null) {
+            int row = sortIndex.rowOf(index);
+            fireIntervalAdded(this, row, row);
+        } else {
+            appendToView(index);
+            fireIntervalAdded(this, viewSize - 1, viewSize - 1);
+        }
+    }
+
+    // With a search filter set, the new dinner stays hidden until the next search.
+    void insert(int index, Dinner dinner) {
+        dinners.add(index, dinner);
+        searchIndex.inserted(index, dinner);
+        duplicateIndex.inserted(index, dinner);
+        sortIndex.inserted(index, dinner);
+        if (view == null) {
+            int row = sortIndex.rowOf(index);
+            fireIntervalAdded(this, row, row);
+            return;
+        }
+        for (int i = 0; i < viewSize; i++) {
+            if (view[i] >= index) {
+                view[i]++;
+            }
+        }
+    }
+
+    // Applies a change made of edits, as DinnerService.apply does to the stored
+    // list. A change of several edits fires one event for the rows it touched
+    // and one for the change in size, rather than one per edit.
+    void apply(List<DinnerEdit> edits) {
+        if (edits.size() > 1 && view == null) {
+            applyBulk(edits);
+            return;
+        }
+        for (DinnerEdit edit : edits) {
+            switch (edit.kind) {
+                case INSERT:
+                    insert(edit.index, edit.after);
+                    break;
+                case SET:
+                    set(edit.index, edit.after);
+                    break;
+                default:
+                    remove(edit.index);
+            }
+        }
+    }
+
+    private void applyBulk(List<DinnerEdit> edits) {
+        int oldSize = dinners.size();
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        for (DinnerEdit edit : edits) {
+            switch (edit.kind) {
+                case INSERT:
+                    dinners.add(edit.index, edit.after);
+                    searchIndex.inserted(edit.index, edit.after);
+                    duplicateIndex.inserted(edit.index, edit.after);
+                    sortIndex.inserted(edit.index, edit.after);
+                    break;
+                case SET:
+                    dinners.set(edit.index, edit.after);
+                    searchIndex.changed(edit.index, edit.after);
+                    duplicateIndex.changed(edit.index, edit.after);
+                    sortIndex.changed(edit.index, edit.after);
+                    break;
+                default:
+                    dinners.remove(edit.index);
+                    searchIndex.removed(edit.index);
+                    duplicateIndex.removed(edit.index);
+                    sortIndex.removed(edit.index);
+            }
+            // Rows past last are the old ones shifted by the inserts and removals
+            // so far; an edit at or before last shifts last along with them.
+            if (edit.kind == DinnerEdit.Kind.INSERT && edit.index <= last) {
+                last++;
+            } else if (edit.kind == DinnerEdit.Kind.REMOVE && edit.index < last) {
+                last--;
+            }
+            first = Math.min(first, edit.index);
+            last = Math.max(last, edit.index);
+        }
+        int newSize = dinners.size();
+        // When the size is unchanged, the rows past last are back in place.
+        // Sorted rows can move anywhere, so then every common row may differ.
+        int changedEnd = Math.min(oldSize, newSize) - 1;
+        if (sortIndex.isSorted()) {
+            first = 0;
+        } else if (newSize == oldSize) {
+            changedEnd = Math.min(changedEnd, last);
+        }
+        if (first <= changedEnd) {
+            fireContentsChanged(this, first, changedEnd);
+        }
+        if (newSize < oldSize) {
+            fireIntervalRemoved(this, newSize, oldSize - 1);
+        } else if (newSize > oldSize) {
+            fireIntervalAdded(this, oldSize, newSize - 1);
+        }
+    }
+
+    // A sorted row that moves is fired as removed from its old row and added at
+    // its new one.
+    void set(int index, Dinner dinner) {
+        int oldRow = view == null ? sortIndex.rowOf(index) : -1;
+        dinners.set(index, dinner);
+        searchIndex.changed(index, dinner);
+        duplicateIndex.changed(index, dinner);
+        sortIndex.changed(index, dinner);
+        if (oldRow >= 0) {
+            int newRow = sortIndex.rowOf(index);
+            if (newRow != oldRow) {
+                fireIntervalRemoved(this, oldRow, oldRow);
+                fireIntervalAdded(this, newRow, newRow);
+                return;
+            }
+        }
+        int row = toRow(index);
+        if (row >= 0) {
+            fireContentsChanged(this, row, row);
+        }
+    }
+
+    void remove(int index) {
+        int row = view == null ? sortIndex.rowOf(index) : -1;
+        dinners.remove(index);
+        searchIndex.removed(index);
+        duplicateIndex.removed(index);
+        sortIndex.removed(index);
+        if (view != null) {
+            row = -1;
+            int kept = 0;
+            for (int i = 0; i < viewSize; i++) {
+                if (view[i] == index) {
+                    row = i;
+                } else {
+                    view[kept++] = view[i] > index ? view[i] - 1 : view[i];
+                }
+            }
+            viewSize = kept;
+        }
+        if (row >= 0) {
+            fireIntervalRemoved(this, row, row);
+        }
+    }
+
+    // Hands the search index a copy of the list the first time a search needs it.
+    DinnerSearchIndex prepareSearch() {
+        if (!searchIndex.isPrepared()) {
+            searchIndex.prepare(DinnerStore.copyOf(dinners));
+        }
+        return searchIndex;
+    }
+
+    // Hands the duplicate index a copy of the list the first time it is asked for.
+    DinnerDuplicateIndex prepareDuplicates() {
+        if (!duplicateIndex.isPrepared()) {
+            duplicateIndex.prepare(DinnerStore.copyOf(dinners));
+        }
+        return duplicateIndex;
+    }
+
+    // Shows only the given list positions; null shows the whole list again.
+    void setFilter(int[] positions) {
+        int oldSize = getSize();
+        view = positions == null ? null : positions.clone();
+        viewSize = positions == null ? 0 : positions.length;
+        if (view != null) {
+            sortView(view, viewSize);
+        }
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (getSize() > 0) {
+            fireIntervalAdded(this, 0, getSize() - 1);
+        }
+    }
+
+    void appendFilter(int[] positions) {
+        if (view == null || positions.length == 0) {
+            return;
+        }
+        int first = viewSize;
+        for (int position : positions) {
+            appendToView(position);
+        }
+        if (sortIndex.isSorted()) {
+            // The batch interleaves with the rows already shown.
+            sortView(view, viewSize);
+            if (first > 0) {
+                fireContentsChanged(this, 0, first - 1);
+            }
+        }
+        fireIntervalAdded(this, first, viewSize - 1);
+    }
+
+    DinnerSortIndex.Order getOrder() {
+        return sortIndex.order();
+    }
+
+    // Shows the rows in order; the index for an order is built the first time
+    // it is chosen and kept up to date after, so switching back is immediate.
+    void setOrder(DinnerSortIndex.Order order) {
+        if (order == sortIndex.order()) {
+            return;
+        }
+        sortIndex.setOrder(order, dinners);
+        if (view != null) {
+            sortView(view, viewSize);
+        }
+        if (getSize() > 0) {
+            fireContentsChanged(this, 0, getSize() - 1);
+        }
+    }
+
+    int toListIndex(int row) {
+        return view == null ? sortIndex.positionAt(row) : view[row];
+    }
+
+    @Override
+    public int getSize() {
+        return view == null ? dinners.size() : viewSize;
+    }
+
+    @Override
+    public Dinner getElementAt(int row) {
+        return dinners.get(toListIndex(row));
+    }
+
+    // Hunk positions in the new list are where each hunk lands once the ones
+    // before it have been applied, so the events can be fired in order.
+    private void fireHunks(List<DinnerDiff.Hunk> hunks) {
+        for (DinnerDiff.Hunk hunk : hunks) {
+            int removed = hunk.oldEnd - hunk.oldStart;
+            int added = hunk.newEnd - hunk.newStart;
+            int changed = Math.min(removed, added);
+            if (changed > 0) {
+                fireContentsChanged(this, hunk.newStart, hunk.newStart + changed - 1);
+            }
+            if (removed > changed) {
+                fireIntervalRemoved(this, hunk.newStart + changed, hunk.newStart + removed - 1);
+            } else if (added > changed) {
+                fireIntervalAdded(this, hunk.newStart + changed, hunk.newEnd - 1);
+            }
+        }
+    }
+
+    // The row showing list position index, or -1 if the filter hides it.
+    int toRow(int index) {
+        if (view == null) {
+            return sortIndex.rowOf(index);
+        }
+        for (int i = 0; i < viewSize; i++) {
+            if (view[i] == index) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Puts list positions in the order's row order, sorting each as its row in
+    // the high half of a long.
+    private void sortView(int[] positions, int size) {
+        if (!sortIndex.isSorted()) {
+            Arrays.sort(positions, 0, size);
+            return;
+        }
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = (long) sortIndex.rowOf(positions[i]) << 32 | positions[i];
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < size; i++) {
+            positions[i] = (int) keys[i];
+        }
+    }
+
+    private void appendToView(int index) {
+        if (viewSize == view.length) {
+            view = Arrays.copyOf(view, Math.max(16, viewSize * 2));
+        }
+        view[viewSize++] = index;
+    }
+}
@@ -0,0 +1,252 @@
+package dinnerapp;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+// Random picks from one user's dinner list, weighted by Dinner.getWeight(), in
+// O(1) per pick with no allocation. While every weight is 1 a pick is a single
+// nextInt. Otherwise it uses Walker's alias table, which is rebuilt on the first
+// pick after the list changed; add, set and remove only patch a weights array.
+//
+// The last HISTORY picks are kept in a ring buffer so callers can ask not to
+// repeat the most recent ones. Not thread-safe; DinnerCache guards it with the
+// user's stripe lock.
+class DinnerPicker {
+    static final int HISTORY = 64;
+    // Tries before giving up on rejection sampling and scanning for a pick.
+    private static final int MAX_REJECTIONS = 32;
+
+    private final List<Dinner> dinners;
+    private double[] weights;
+    private int size;
+    private int weighted;
+    private boolean stale = true;
+
+    private double[] probability = new double[0];
+    private int[] alias = new int[0];
+    private int[] small = new int[0];
+    private int[] large = new int[0];
+
+    private final int[] history = new int[HISTORY];
+    private int historyEnd;
+    private int historySize;
+
+    // Weights are read from dinners on the first pick, so creating a picker for a
+    // list that is never picked from costs nothing.
+    DinnerPicker(List<Dinner> dinners) {
+        this.dinners = dinners;
+    }
+
+    // Call after the list has changed in the same way.
+    void added(Dinner dinner) {
+        if (weights == null) {
+            return;
+        }
+        if (size == weights.length) {
+            weights = Arrays.copyOf(weights, Math.max(10, size + (size >> 1)));
+        }
+        weights[size++] = dinner.getWeight();
+        account(dinner.getWeight(), 1);
+        stale = true;
+    }
+
+    void inserted(int index, Dinner dinner) {
+        for (int i = 0, slot = historyEnd - historySize; i < historySize; i++, slot++) {
+            int j = Math.floorMod(slot, HISTORY);
+            if (history[j] >= index) {
+                history[j]++;
+            }
+        }
+        if (weights == null) {
+            return;
+        }
+        if (size == weights.length) {
+            weights = Arrays.copyOf(weights, Math.max(10, size + (size >> 1)));
+        }
+        System.arraycopy(weights, index, weights, index + 1, size - index);
+        weights[index] = dinner.getWeight();
+        size++;
+        account(dinner.getWeight(), 1);
+        stale = true;
+    }
+
+    void changed(int index, Dinner dinner) {
+        // A counted pick or an edit keeps the weight; the table still holds.
+        if (weights == null || weights[index] == dinner.getWeight()) {
+            return;
+        }
+        account(weights[index], -1);
+        weights[index] = dinner.getWeight();
+        account(weights[index], 1);
+        stale = true;
+    }
+
+    void removed(int index) {
+        for (int i = 0, slot = historyEnd - historySize; i < historySize; i++, slot++) {
+            int j = Math.floorMod(slot, HISTORY);
+            if (history[j] == index) {
+                history[j] = -1;
+            } else if (history[j] > index) {
+                history[j]--;
+            }
+        }
+        if (weights == null) {
+            return;
+        }
+        account(weights[index], -1);
+        System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+        size--;
+        stale = true;
+    }
+
+    // Returns the index of a random dinner, or -1 if the list is empty. The last
+    // avoid picks (at most HISTORY) are not repeated while other dinners remain.
+    int pick(RandomGenerator random, int avoid) {
+        if (weights == null) {
+            readWeights();
+        }
+        if (size == 0) {
+            return -1;
+        }
+        if (stale && weighted > 0) {
+            rebuild();
+        }
+        avoid = Math.min(Math.min(avoid, historySize), size - 1);
+        int index = draw(random);
+        for (int tries = 0; avoid > 0 && recentlyPicked(index, avoid); tries++) {
+            if (tries == MAX_REJECTIONS) {
+                index = scan(random, avoid);
+                break;
+            }
+            index = draw(random);
+        }
+        record(index);
+        return index;
+    }
+
+    // Records a pick made elsewhere, e.g. by DinnerRecommender, so later picks
+    // avoid it too.
+    void record(int index) {
+        history[historyEnd] = index;
+        historyEnd = (historyEnd + 1) % HISTORY;
+        historySize = Math.min(historySize + 1, HISTORY);
+    }
+
+    // Whether index is among the last avoid picks.
+    boolean isRecent(int index, int avoid) {
+        return recentlyPicked(index, Math.min(avoid, historySize));
+    }
+
+    // Fills picks with that many draws, each honouring avoid as pick() does, so
+    // with avoid >= picks.length the draws are distinct while the list allows.
+    void pick(RandomGenerator random, int avoid, int[] picks) {
+        for (int i = 0; i < picks.length; i++) {
+            picks[i] = pick(random, avoid);
+        }
+    }
+
+    private int draw(RandomGenerator random) {
+        int index = random.nextInt(size);
+        if (weighted == 0) {
+            return index;
+        }
+        return random.nextDouble() < probability[index] ? index : alias[index];
+    }
+
+    private boolean recentlyPicked(int index, int avoid) {
+        for (int i = 1; i <= avoid; i++) {
+            if (history[Math.floorMod(historyEnd - i, HISTORY)] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Weighted pick among the dinners not recently picked, by walking the weights.
+    // Only reached when most of the weight sits on the avoided dinners.
+    private int scan(RandomGenerator random, int avoid) {
+        double allowed = 0;
+        for (int i = 0; i < size; i++) {
+            if (!recentlyPicked(i, avoid)) {
+                allowed += weights[i];
+            }
+        }
+        double target = random.nextDouble() * allowed;
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            if (!recentlyPicked(i, avoid)) {
+                last = i;
+                target -= weights[i];
+                if (target < 0) {
+                    return i;
+                }
+            }
+        }
+        return last;
+    }
+
+    private void readWeights() {
+        size = dinners.size();
+        weights = new double[Math.max(10, size)];
+        MappedDinnerList mapped = dinners instanceof MappedDinnerList ? (MappedDinnerList) dinners : null;
+        ColumnarDinnerList columnar = dinners instanceof ColumnarDinnerList ? (ColumnarDinnerList) dinners : null;
+        OverlayDinnerList overlay = dinners instanceof OverlayDinnerList ? (OverlayDinnerList) dinners : null;
+        for (int i = 0; i < size; i++) {
+            weights[i] = mapped != null ? mapped.weight(i) : columnar != null ? columnar.weight(i)
+                    : overlay != null ? overlay.weight(i) : dinners.get(i).getWeight();
+            account(weights[i], 1);
+        }
+        stale = true;
+    }
+
+    private void account(double weight, int sign) {
+        if (weight != 1) {
+            weighted += sign;
+        }
+    }
+
+    // Vose's variant of Walker's alias method.
+    private void rebuild() {
+        if (probability.length < size) {
+            int capacity = Math.max(size, probability.length + (probability.length >> 1));
+            probability = new double[capacity];
+            alias = new int[capacity];
+            small = new int[capacity];
+            large = new int[capacity];
+        }
+        double totalWeight = 0;
+        for (int i = 0; i < size; i++) {
+            totalWeight += weights[i];
+        }
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < size; i++) {
+            probability[i] = weights[i] * size / totalWeight;
+            if (probability[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            alias[less] = more;
+            probability[more] += probability[less] - 1;
+            if (probability[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Whatever is left is 1 up to rounding error.
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1;
+        }
+        stale = false;
+    }
+}
@@ -0,0 +1,461 @@
+package dinnerapp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.random.RandomGenerator;
+
+// "You'll probably like" picks. Dinners are items by name, ignoring case and
+// spacing, and two items are similar when the same users keep both: the cosine
+// of their columns in the user-item matrix. For every item the NEIGHBOURS most
+// similar ones are kept in a table, so a suggestion reads a few rows: the user's
+// most picked dinners are the seeds, and their dinners in the seeds' rows are
+// the candidates, drawn with probability by summed similarity.
+//
+// The table is built in the background the first time a suggestion is asked
+// for: every user's list is read with DinnerStore.peek and the rows computed in
+// parallel on the common fork-join pool. After that a changed list only updates
+// the co-occurrence counts of that user's items and recomputes their rows;
+// other rows keep their neighbours, with the scores they had, until one of
+// their own pairs changes. Each user contributes at most MAX_PROFILE items, the
+// most picked and then the newest, which bounds the pairs counted per user.
+//
+// Until the table is ready, or for a user with no picks yet, suggest() returns
+// -1 and the caller makes a plain random pick.
+class DinnerRecommender implements Closeable {
+    static final int NEIGHBOURS = Integer.getInteger("dinner.recommend.neighbours", 32);
+    static final int MAX_PROFILE = Integer.getInteger("dinner.recommend.maxProfile", 256);
+    static final int SEEDS = 8;
+    // Changes arriving within this long of each other are folded into one update.
+    static final long UPDATE_DELAY_MILLIS = Long.getLong("dinner.recommend.delayMillis", 2000);
+
+    // What one user contributes, sorted by item id: the item, its name key and
+    // the list position it was read at, so a suggestion can find it again.
+    private static final class Profile {
+        final int[] items;
+        final String[] keys;
+        final int[] positions;
+        // The most picked items, most picked first.
+        final int[] seeds;
+
+        Profile(int[] items, String[] keys, int[] positions, int[] seeds) {
+            this.items = items;
+            this.keys = keys;
+            this.positions = positions;
+            this.seeds = seeds;
+        }
+    }
+
+    // A profile before its names have item ids, best first.
+    private static final class Draft {
+        final String user;
+        final List<String> keys = new ArrayList<>();
+        final List<Integer> positions = new ArrayList<>();
+        int seeds;
+
+        Draft(String user) {
+            this.user = user;
+        }
+    }
+
+    private static final class Row {
+        final int[] items;
+        final float[] scores;
+
+        Row(int[] items, float[] scores) {
+            this.items = items;
+            this.scores = scores;
+        }
+    }
+
+    private final File dir;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dinner-recommender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    // Rows are written on the recommender thread and published by writing the
+    // field again once they are all in place.
+    private volatile Row[] rows = new Row[0];
+
+    // Recommender thread only. counts[a] holds, for every item b kept together
+    // with a, the number of users keeping both; counts[a].get(a) is the number
+    // of users keeping a.
+    private final Map<String, Integer> ids = new HashMap<>();
+    private Counts[] counts = new Counts[0];
+
+    // dir holds the users' dinner files.
+    DinnerRecommender(File dir) {
+        this.dir = dir;
+    }
+
+    // Call after user's list changed, here or in another instance.
+    void changed(String user) {
+        if (!started.get()) {
+            return;
+        }
+        dirty.add(user);
+        if (updateScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::update, UPDATE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // The position in dinners of a dinner to suggest to user, or -1. Call with the
+    // user's list locked; the suggestion is recorded in picker's history, and
+    // the last avoid picks there are not suggested.
+    int suggest(String user, List<Dinner> dinners, DinnerPicker picker, int avoid, RandomGenerator random) {
+        if (started.compareAndSet(false, true)) {
+            executor.execute(this::build);
+        }
+        Profile profile = profiles.get(user);
+        if (!ready || profile == null || profile.seeds.length == 0) {
+            return -1;
+        }
+        Row[] table = rows;
+        int[] candidates = new int[SEEDS * NEIGHBOURS];
+        float[] weights = new float[candidates.length];
+        int count = 0;
+        double total = 0;
+        for (int seed : profile.seeds) {
+            Row row = seed < table.length ? table[seed] : null;
+            if (row == null) {
+                continue;
+            }
+            for (int i = 0; i < row.items.length; i++) {
+                int k = Arrays.binarySearch(profile.items, row.items[i]);
+                if (k >= 0 && !picker.isRecent(profile.positions[k], avoid)) {
+                    candidates[count] = k;
+                    weights[count++] = row.scores[i];
+                    total += row.scores[i];
+                }
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+        int chosen = candidates[count - 1];
+        double target = random.nextDouble() * total;
+        for (int i = 0; i < count; i++) {
+            target -= weights[i];
+            if (target < 0) {
+                chosen = candidates[i];
+                break;
+            }
+        }
+        int position = profile.positions[chosen];
+        if (position >= dinners.size() || !key(dinners.get(position)).equals(profile.keys[chosen])) {
+            // The list moved on since the profile was read.
+            changed(user);
+            return -1;
+        }
+        picker.record(position);
+        return position;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Dinners with the same key count as one item.
+    static String key(Dinner dinner) {
+        return dinner.getName().trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private void build() {
+        long start = System.nanoTime();
+        File[] files = dir.listFiles((d, name) -> name.endsWith("_dinners.dat") || name.endsWith("_dinners.journal"));
+        Set<String> users = new LinkedHashSet<>();
+        for (File file : files != null ? files : new File[0]) {
+            String name = file.getName();
+            users.add(name.substring(0, name.lastIndexOf("_dinners.")));
+        }
+        Draft[] drafts = users.stream().map(Draft::new).toArray(Draft[]::new);
+        Parallel.forEach(0, drafts.length, i -> read(drafts[i]));
+        List<Profile> built = new ArrayList<>(drafts.length);
+        for (Draft draft : drafts) {
+            Profile profile = profile(draft);
+            profiles.put(draft.user, profile);
+            built.add(profile);
+        }
+        // Which profiles keep each item, so each item's counts can be summed
+        // by one task without sharing.
+        int[][] keepers = new int[ids.size()][];
+        int[] keeperCounts = new int[ids.size()];
+        for (int p = 0; p < built.size(); p++) {
+            for (int item : built.get(p).items) {
+                int[] list = keepers[item];
+                if (list == null || keeperCounts[item] == list.length) {
+                    keepers[item] = list = Arrays.copyOf(list != null ? list : new int[0], Math.max(4, keeperCounts[item] * 2));
+                }
+                list[keeperCounts[item]++] = p;
+            }
+        }
+        Counts[] all = new Counts[ids.size()];
+        Parallel.forEach(0, all.length, item -> {
+            Counts c = new Counts();
+            for (int i = 0; i < keeperCounts[item]; i++) {
+                for (int other : built.get(keepers[item][i]).items) {
+                    c.add(other, 1);
+                }
+            }
+            all[item] = c;
+        });
+        counts = all;
+        int[] items = new int[all.length];
+        Arrays.setAll(items, i -> i);
+        computeRows(items);
+        ready = true;
+        Metrics.record(Metrics.Op.RECOMMEND, start);
+    }
+
+    private void update() {
+        updateScheduled.set(false);
+        long start = System.nanoTime();
+        Set<Integer> touched = new LinkedHashSet<>();
+        for (String user : dirty.toArray(new String[0])) {
+            dirty.remove(user);
+            Draft draft = new Draft(user);
+            read(draft);
+            Profile old = profiles.get(user);
+            Profile now = profile(draft);
+            if (old == null || !Arrays.equals(old.items, now.items)) {
+                if (old != null) {
+                    count(old, -1, touched);
+                }
+                count(now, 1, touched);
+            }
+            profiles.put(user, now);
+        }
+        computeRows(touched.stream().mapToInt(Integer::intValue).toArray());
+        Metrics.record(Metrics.Op.RECOMMEND, start);
+    }
+
+    private void count(Profile profile, int delta, Set<Integer> touched) {
+        if (counts.length < ids.size()) {
+            counts = Arrays.copyOf(counts, Math.max(16, ids.size() * 2));
+        }
+        for (int a : profile.items) {
+            if (counts[a] == null) {
+                counts[a] = new Counts();
+            }
+            touched.add(a);
+            for (int b : profile.items) {
+                counts[a].add(b, delta);
+            }
+        }
+    }
+
+    // Picks the user's items, best first: most picked, then newest.
+    private static void read(Draft draft) {
+        List<Dinner> dinners;
+        try {
+            dinners = DinnerStore.peek(draft.user);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        int size = dinners.size();
+        int[] picks = new int[size];
+        long[] created = new long[size];
+        Comparator<Integer> worseFirst = (a, b) -> picks[a] != picks[b]
+                ? Integer.compare(picks[a], picks[b]) : Long.compare(created[a], created[b]);
+        PriorityQueue<Integer> best = new PriorityQueue<>(worseFirst);
+        for (int i = 0; i < size; i++) {
+            Dinner dinner = dinners.get(i);
+            picks[i] = dinner.getPicks();
+            created[i] = dinner.getCreated();
+            best.add(i);
+            if (best.size() > MAX_PROFILE) {
+                best.poll();
+            }
+        }
+        Integer[] chosen = best.toArray(new Integer[0]);
+        Arrays.sort(chosen, worseFirst.reversed());
+        Set<String> seen = new HashSet<>();
+        for (int position : chosen) {
+            String key = key(dinners.get(position));
+            if (seen.add(key)) {
+                draft.keys.add(key);
+                draft.positions.add(position);
+                if (picks[position] > 0 && draft.seeds < SEEDS) {
+                    draft.seeds++;
+                }
+            }
+        }
+    }
+
+    private Profile profile(Draft draft) {
+        int n = draft.keys.size();
+        Integer[] order = new Integer[n];
+        int[] itemOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            itemOf[i] = ids.computeIfAbsent(draft.keys.get(i), key -> ids.size());
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(itemOf[a], itemOf[b]));
+        int[] items = new int[n];
+        String[] keys = new String[n];
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = itemOf[order[i]];
+            keys[i] = draft.keys.get(order[i]);
+            positions[i] = draft.positions.get(order[i]);
+        }
+        int[] seeds = new int[draft.seeds];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = itemOf[i];
+        }
+        return new Profile(items, keys, positions, seeds);
+    }
+
+    private void computeRows(int[] items) {
+        Row[] table = rows.length >= ids.size() ? rows : Arrays.copyOf(rows, Math.max(16, ids.size() * 2));
+        Parallel.forEach(0, items.length, i -> table[items[i]] = row(items[i]));
+        rows = table;
+    }
+
+    // The NEIGHBOURS items most similar to item, by cosine over their keepers.
+    private Row row(int item) {
+        Counts c = counts[item];
+        double keepers = c.get(item);
+        long[] ranked = new long[c.size()];
+        int n = 0;
+        for (int slot = 0; slot < c.capacity(); slot++) {
+            int other = c.keyAt(slot);
+            if (other < 0 || other == item) {
+                continue;
+            }
+            float score = (float) (c.valueAt(slot) / Math.sqrt(keepers * counts[other].get(other)));
+            // Positive floats order like their bits, so score and item sort as one long.
+            ranked[n++] = (long) Float.floatToIntBits(score) << 32 | other;
+        }
+        Arrays.sort(ranked, 0, n);
+        int k = Math.min(NEIGHBOURS, n);
+        int[] items = new int[k];
+        float[] scores = new float[k];
+        for (int i = 0; i < k; i++) {
+            long entry = ranked[n - 1 - i];
+            items[i] = (int) entry;
+            scores[i] = Float.intBitsToFloat((int) (entry >>> 32));
+        }
+        return new Row(items, scores);
+    }
+
+    // Map from item to count, with open addressing; a count reaching 0 is removed.
+    private static final class Counts {
+        private int[] keys = emptyKeys(8);
+        private int[] values = new int[8];
+        private int size;
+
+        private static int[] emptyKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        // The key in slot, or -1 if it is empty.
+        int keyAt(int slot) {
+            return keys[slot];
+        }
+
+        int valueAt(int slot) {
+            return values[slot];
+        }
+
+        int get(int key) {
+            for (int slot = slot(key); keys[slot] >= 0; slot = (slot + 1) & (keys.length - 1)) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return 0;
+        }
+
+        void add(int key, int delta) {
+            int slot = slot(key);
+            while (keys[slot] >= 0 && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if (keys[slot] < 0) {
+                if (delta <= 0) {
+                    return;
+                }
+                keys[slot] = key;
+                values[slot] = delta;
+                if (++size * 2 > keys.length) {
+                    resize();
+                }
+                return;
+            }
+            values[slot] += delta;
+            if (values[slot] <= 0) {
+                remove(slot);
+            }
+        }
+
+        // Backward-shift deletion, so lookups never need tombstones.
+        private void remove(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; keys[next] >= 0; next = (next + 1) & mask) {
+                int home = slot(keys[next]);
+                // Move next into the hole unless its home lies cyclically in (hole, next].
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            keys[hole] = -1;
+            size--;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = emptyKeys(oldKeys.length * 2);
+            values = new int[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] >= 0) {
+                    add(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private int slot(int key) {
+            int h = key * 0x9E3779B9;
+            return (h ^ h >>> 16) & (keys.length - 1);
+        }
+    }
+}
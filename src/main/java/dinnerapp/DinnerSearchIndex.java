@@ -0,0 +1,286 @@
+package dinnerapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Inverted index over dinner names and descriptions. Queries of three or more
+// characters match substrings through trigram postings; shorter queries match
+// the start of a word through one- and two-character prefix tokens.
+//
+// The index stays dormant until the first search, so lists that are never
+// searched pay nothing. Entries get a fresh id whenever they change; stale ids
+// left in the postings are filtered out when candidates are verified, and the
+// postings are rebuilt once stale ids outnumber live ones.
+//
+// Mutations arrive on the EDT while searches run on a worker, so every method
+// is synchronized. The first search indexes the prepared list outside the lock
+// and then publishes it, so the EDT never waits on that; mutations made in the
+// meantime are queued and replayed on the published index.
+class DinnerSearchIndex {
+    private static final int MIN_REBUILD_GARBAGE = 1024;
+
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private Map<String, IntList> postings = new HashMap<>();
+    private IntList positions = new IntList();
+    private String[] names = new String[16];
+    private String[] descriptions = new String[16];
+    private int nextId;
+    private int garbage;
+    private boolean built;
+    private List<Dinner> pendingBuild;
+    // Set while a search indexes pendingBuild outside the lock.
+    private boolean building;
+    private List<Runnable> queued = new ArrayList<>();
+
+    synchronized boolean isPrepared() {
+        return built || pendingBuild != null;
+    }
+
+    // Hands over a private copy of the current list; it is indexed lazily by
+    // the first search.
+    synchronized void prepare(List<Dinner> copy) {
+        if (!built && pendingBuild == null) {
+            pendingBuild = copy;
+        }
+    }
+
+    synchronized void reset() {
+        built = false;
+        pendingBuild = null;
+        queued.clear();
+        clear();
+    }
+
+    synchronized void added(Dinner dinner) {
+        apply(() -> positions.add(index(dinner)));
+    }
+
+    synchronized void inserted(int position, Dinner dinner) {
+        apply(() -> {
+            positions.add(0);
+            System.arraycopy(positions.values, position, positions.values, position + 1, positions.size - position - 1);
+            positions.values[position] = index(dinner);
+        });
+    }
+
+    synchronized void changed(int position, Dinner dinner) {
+        apply(() -> {
+            release(positions.values[position]);
+            positions.values[position] = index(dinner);
+            compactIfNeeded();
+        });
+    }
+
+    synchronized void removed(int position) {
+        apply(() -> {
+            release(positions.values[position]);
+            System.arraycopy(positions.values, position + 1, positions.values, position, positions.size - position - 1);
+            positions.size--;
+            compactIfNeeded();
+        });
+    }
+
+    // Returns the list positions of matching dinners, in list order. The first
+    // search builds the index, so this runs off the EDT.
+    int[] search(String query) {
+        build();
+        synchronized (this) {
+            return find(query);
+        }
+    }
+
+    private int[] find(String query) {
+        String q = query.toLowerCase(Locale.ROOT);
+        if (q.isEmpty()) {
+            return new int[0];
+        }
+        IntList candidates = null;
+        if (q.length() < 3) {
+            candidates = postings.get("^" + q);
+        } else {
+            for (int i = 0; i + 3 <= q.length(); i++) {
+                IntList posting = postings.get(q.substring(i, i + 3));
+                if (posting == null) {
+                    return new int[0];
+                }
+                if (candidates == null || posting.size < candidates.size) {
+                    candidates = posting;
+                }
+            }
+        }
+        if (candidates == null) {
+            return new int[0];
+        }
+        BitSet matches = new BitSet(nextId);
+        for (int i = 0; i < candidates.size; i++) {
+            int id = candidates.values[i];
+            if (names[id] != null && !matches.get(id) && (matches(names[id], q) || matches(descriptions[id], q))) {
+                matches.set(id);
+            }
+        }
+        int[] result = new int[matches.cardinality()];
+        int count = 0;
+        for (int position = 0; position < positions.size && count < result.length; position++) {
+            if (matches.get(positions.values[position])) {
+                result[count++] = position;
+            }
+        }
+        return result;
+    }
+
+    // Mutations wait in the queue while the prepared list is indexed, and are
+    // dropped while the index is dormant.
+    private void apply(Runnable mutation) {
+        if (built) {
+            mutation.run();
+        } else if (pendingBuild != null) {
+            queued.add(mutation);
+        }
+    }
+
+    private void build() {
+        List<Dinner> copy;
+        synchronized (this) {
+            while (building) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (pendingBuild == null) {
+                return;
+            }
+            building = true;
+            copy = pendingBuild;
+        }
+        DinnerSearchIndex fresh = new DinnerSearchIndex();
+        boolean indexed = false;
+        try {
+            for (Dinner dinner : copy) {
+                fresh.positions.add(fresh.index(dinner));
+            }
+            indexed = true;
+        } finally {
+            synchronized (this) {
+                // Unless reset() dropped the list meanwhile.
+                if (indexed && pendingBuild == copy) {
+                    postings = fresh.postings;
+                    positions = fresh.positions;
+                    names = fresh.names;
+                    descriptions = fresh.descriptions;
+                    nextId = fresh.nextId;
+                    garbage = 0;
+                    pendingBuild = null;
+                    built = true;
+                    for (Runnable mutation : queued) {
+                        mutation.run();
+                    }
+                    queued.clear();
+                }
+                building = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private void clear() {
+        postings.clear();
+        positions.size = 0;
+        Arrays.fill(names, null);
+        Arrays.fill(descriptions, null);
+        nextId = 0;
+        garbage = 0;
+    }
+
+    private int index(Dinner dinner) {
+        return index(dinner.getName().toLowerCase(Locale.ROOT), dinner.getDescription().toLowerCase(Locale.ROOT));
+    }
+
+    private int index(String name, String description) {
+        int id = nextId++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            descriptions = Arrays.copyOf(descriptions, id * 2);
+        }
+        names[id] = name;
+        descriptions[id] = description;
+        addTokens(id, name);
+        addTokens(id, description);
+        return id;
+    }
+
+    private void addTokens(int id, String text) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            post(text.substring(i, i + 3), id);
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))) {
+                post("^" + text.charAt(i), id);
+                if (i + 1 < text.length()) {
+                    post("^" + text.substring(i, i + 2), id);
+                }
+            }
+        }
+    }
+
+    private void post(String token, int id) {
+        IntList posting = postings.computeIfAbsent(token, t -> new IntList());
+        if (posting.size == 0 || posting.values[posting.size - 1] != id) {
+            posting.add(id);
+        }
+    }
+
+    private void release(int id) {
+        names[id] = null;
+        descriptions[id] = null;
+        garbage++;
+    }
+
+    private void compactIfNeeded() {
+        if (garbage < MIN_REBUILD_GARBAGE || garbage < positions.size) {
+            return;
+        }
+        String[] oldNames = names;
+        String[] oldDescriptions = descriptions;
+        int[] oldIds = Arrays.copyOf(positions.values, positions.size);
+        names = new String[Math.max(16, oldIds.length)];
+        descriptions = new String[names.length];
+        postings.clear();
+        positions.size = 0;
+        nextId = 0;
+        garbage = 0;
+        for (int oldId : oldIds) {
+            positions.add(index(oldNames[oldId], oldDescriptions[oldId]));
+        }
+    }
+
+    private static boolean matches(String text, String q) {
+        if (q.length() >= 3) {
+            return text.contains(q);
+        }
+        for (int i = text.indexOf(q); i >= 0; i = text.indexOf(q, i + 1)) {
+            if (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,480 @@
+package dinnerapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Local HTTP/JSON front end for DinnerService, so several people can share one
+// set of dinner files:
+//
+//   POST   /register        {"username": "...", "password": "..."}
+//   POST   /login           {"username": "...", "password": "..."} -> {"token": "..."}
+//   POST   /logout
+//   GET    /dinners         -> [{"name": "...", "description": "..."}, ...]
+//   POST   /dinners         {"name": "...", "description": "...", "weight": 2} -> {"index": n}
+//   PUT    /dinners/{index} {"name": "...", "description": "...", "weight": 2}
+//   DELETE /dinners/{index}
+//   GET    /dinners/random  -> {"name": "...", "description": "..."}
+//   GET    /dinners/random?count=k&avoid=n -> [k dinners]
+//   GET    /stats           -> {"users": n, "dinners": n, "hits": n, ...}
+//
+// Everything except /register, /login and /stats needs "Authorization: Bearer <token>".
+// "weight" is optional and defaults to 1, or on PUT to the dinner's current
+// weight; PUT keeps when the dinner was added and its pick count. Random picks
+// are weighted by it, and avoid skips the user's last n picks (up to
+// DinnerPicker.HISTORY).
+// Passwords are checked once at login rather than on every request, since the
+// KDF is deliberately slow; a token not used for SESSION_TIMEOUT_MINUTES expires.
+// The server listens on the loopback interface unless dinner.server.host names
+// another, e.g. 0.0.0.0 for all of them. Requests run on virtual threads when the
+// JDK has them, otherwise on a fixed pool.
+class DinnerServer {
+    static final int DEFAULT_PORT = 8080;
+    static final String HOST = System.getProperty("dinner.server.host");
+    static final long SESSION_TIMEOUT_MINUTES = Long.getLong("dinner.server.sessionMinutes", 30);
+    private static final int POOL_SIZE = 256;
+    private static final int MAX_PICKS = 1000;
+
+    private final DinnerService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    // A logged-in token.
+    private static final class Session {
+        final String user;
+        volatile long lastUsed = System.nanoTime();
+
+        Session(String user) {
+            this.user = user;
+        }
+
+        boolean expired(long now) {
+            return now - lastUsed > TimeUnit.MINUTES.toNanos(SESSION_TIMEOUT_MINUTES);
+        }
+    }
+
+    DinnerServer(DinnerService service, int port) throws IOException {
+        this.service = service;
+        InetSocketAddress address = HOST != null ? new InetSocketAddress(HOST, port)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        server = HttpServer.create(address, 1024);
+        executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/register", this::handleRegister);
+        server.createContext("/login", this::handleLogin);
+        server.createContext("/logout", this::handleLogout);
+        server.createContext("/dinners", this::handleDinners);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    public static void main(String[] args) throws IOException {
+        UserStore users = new UserStore(new File("admin.txt"), new File("admin.idx"));
+        users.open();
+        DinnerService service = new DinnerService(users);
+        DinnerServer server = new DinnerServer(service, args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            service.close();
+        }));
+        server.start();
+        System.out.println("Dinner server listening on " + server.server.getAddress());
+    }
+
+    private static ExecutorService requestExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(POOL_SIZE);
+        }
+    }
+
+    private void handleRegister(HttpExchange exchange) throws IOException {
+        try {
+            if (!requireMethod(exchange, "POST")) {
+                return;
+            }
+            Map<String, String> body = Json.parseObject(readBody(exchange));
+            String username = body.getOrDefault("username", "");
+            String password = body.getOrDefault("password", "");
+            if (!UserStore.isValidUsername(username) || password.isEmpty()) {
+                send(exchange, 400, error("Invalid username or password."));
+            } else if (service.register(username, password)) {
+                send(exchange, 201, "{}");
+            } else {
+                send(exchange, 409, error("Username already exists."));
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleLogin(HttpExchange exchange) throws IOException {
+        try {
+            if (!requireMethod(exchange, "POST")) {
+                return;
+            }
+            Map<String, String> body = Json.parseObject(readBody(exchange));
+            String username = body.getOrDefault("username", "");
+            if (service.authenticate(username, body.getOrDefault("password", ""))) {
+                byte[] bytes = new byte[24];
+                random.nextBytes(bytes);
+                String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+                long now = System.nanoTime();
+                sessions.values().removeIf(session -> session.expired(now));
+                sessions.put(token, new Session(username));
+                send(exchange, 200, "{\"token\":" + Json.quote(token) + "}");
+            } else {
+                send(exchange, 401, error("Invalid username or password."));
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleLogout(HttpExchange exchange) throws IOException {
+        try {
+            String token = token(exchange);
+            if (token != null) {
+                sessions.remove(token);
+            }
+            send(exchange, 204, null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            if (!requireMethod(exchange, "GET")) {
+                return;
+            }
+            DinnerCache cache = service.cache();
+            send(exchange, 200, "{\"users\":" + cache.users() + ",\"dinners\":" + cache.dinners()
+                    + ",\"hits\":" + cache.hits() + ",\"misses\":" + cache.misses()
+                    + ",\"evictions\":" + cache.evictions() + ",\"writeBacks\":" + cache.writeBacks() + "}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleDinners(HttpExchange exchange) throws IOException {
+        try {
+            // The context matches any path starting with /dinners, e.g. /dinners5.
+            String path = exchange.getRequestURI().getPath();
+            if (!path.equals("/dinners") && !path.startsWith("/dinners/")) {
+                send(exchange, 404, error("Not found."));
+                return;
+            }
+            String user = user(exchange);
+            if (user == null) {
+                send(exchange, 401, error("Not logged in."));
+                return;
+            }
+            String rest = path.equals("/dinners") ? "" : path.substring("/dinners/".length());
+            String method = exchange.getRequestMethod();
+            if (rest.isEmpty() && method.equals("GET")) {
+                send(exchange, 200, Json.dinners(service.list(user)));
+            } else if (rest.isEmpty() && method.equals("POST")) {
+                int index = service.add(user, readDinner(exchange));
+                send(exchange, 201, "{\"index\":" + index + "}");
+            } else if (rest.equals("random") && method.equals("GET")) {
+                Map<String, String> query = query(exchange);
+                int count = Integer.parseInt(query.getOrDefault("count", "1"));
+                int avoid = Integer.parseInt(query.getOrDefault("avoid", "0"));
+                if (count < 1 || count > MAX_PICKS || avoid < 0) {
+                    throw new IllegalArgumentException("count must be 1 to " + MAX_PICKS + " and avoid at least 0.");
+                }
+                List<Dinner> picks = service.random(user, count, avoid);
+                if (picks.isEmpty()) {
+                    send(exchange, 404, error("No dinners."));
+                } else if (query.containsKey("count")) {
+                    send(exchange, 200, Json.dinners(picks));
+                } else {
+                    send(exchange, 200, Json.dinner(picks.get(0)));
+                }
+            } else if (!rest.isEmpty() && method.equals("PUT")) {
+                Map<String, String> body = readDinnerFields(exchange);
+                String weight = body.get("weight");
+                service.edit(user, Integer.parseInt(rest), body.get("name"), body.getOrDefault("description", ""),
+                        weight == null ? null : Double.parseDouble(weight));
+                send(exchange, 204, null);
+            } else if (!rest.isEmpty() && method.equals("DELETE")) {
+                service.remove(user, Integer.parseInt(rest));
+                send(exchange, 204, null);
+            } else {
+                send(exchange, 405, error("Unsupported request."));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            send(exchange, 404, error("No dinner at that index."));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            // Answer rather than drop the connection.
+            e.printStackTrace();
+            send(exchange, 500, error("Internal error."));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Dinner readDinner(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readDinnerFields(exchange);
+        String weight = body.get("weight");
+        return new Dinner(body.get("name"), body.getOrDefault("description", ""), weight == null ? 1 : Double.parseDouble(weight));
+    }
+
+    private static Map<String, String> readDinnerFields(HttpExchange exchange) throws IOException {
+        Map<String, String> body = Json.parseObject(readBody(exchange));
+        if (body.getOrDefault("name", "").isEmpty()) {
+            throw new IllegalArgumentException("Dinner name cannot be empty.");
+        }
+        return body;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(pair.substring(0, eq), pair.substring(eq + 1));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static boolean requireMethod(HttpExchange exchange, String method) throws IOException {
+        if (exchange.getRequestMethod().equals(method)) {
+            return true;
+        }
+        send(exchange, 405, error("Use " + method + "."));
+        return false;
+    }
+
+    // The user the request's token is logged in as, or null if it has none or
+    // it expired.
+    private String user(HttpExchange exchange) {
+        String token = token(exchange);
+        Session session = token == null ? null : sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (session.expired(now)) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.lastUsed = now;
+        return session.user;
+    }
+
+    private static String token(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return null;
+        }
+        return header.substring("Bearer ".length()).trim();
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message == null ? "Bad request." : message) + "}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Just enough JSON for the API above: flat objects of string or number values.
+    // Numbers come back as their text.
+    static final class Json {
+        private Json() {
+        }
+
+        static String dinner(Dinner dinner) {
+            String json = "{\"name\":" + quote(dinner.getName()) + ",\"description\":" + quote(dinner.getDescription());
+            if (dinner.getWeight() != 1) {
+                json += ",\"weight\":" + dinner.getWeight();
+            }
+            return json + "}";
+        }
+
+        static String dinners(List<Dinner> dinners) {
+            StringBuilder json = new StringBuilder(dinners.size() * 48 + 2).append('[');
+            for (int i = 0; i < dinners.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append(dinner(dinners.get(i)));
+            }
+            return json.append(']').toString();
+        }
+
+        static String quote(String s) {
+            StringBuilder json = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': json.append("\\\""); break;
+                    case '\\': json.append("\\\\"); break;
+                    case '\n': json.append("\\n"); break;
+                    case '\r': json.append("\\r"); break;
+                    case '\t': json.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                }
+            }
+            return json.append('"').toString();
+        }
+
+        // Parses {"key": "value", ...}; anything else is an IllegalArgumentException.
+        static Map<String, String> parseObject(String json) {
+            Map<String, String> result = new HashMap<>();
+            int[] pos = {skipSpace(json, 0)};
+            expect(json, pos, '{');
+            if (peek(json, pos) == '}') {
+                pos[0]++;
+                return result;
+            }
+            while (true) {
+                String key = parseString(json, pos);
+                expect(json, pos, ':');
+                result.put(key, peek(json, pos) == '"' ? parseString(json, pos) : parseNumber(json, pos));
+                char c = peek(json, pos);
+                pos[0]++;
+                if (c == '}') {
+                    return result;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("Malformed JSON.");
+                }
+            }
+        }
+
+        private static String parseString(String json, int[] pos) {
+            expect(json, pos, '"');
+            StringBuilder s = new StringBuilder();
+            int i = pos[0];
+            while (i < json.length()) {
+                char c = json.charAt(i++);
+                if (c == '"') {
+                    pos[0] = i;
+                    return s.toString();
+                }
+                if (c != '\\') {
+                    s.append(c);
+                    continue;
+                }
+                if (i >= json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(i++);
+                switch (escaped) {
+                    case 'n': s.append('\n'); break;
+                    case 'r': s.append('\r'); break;
+                    case 't': s.append('\t'); break;
+                    case 'b': s.append('\b'); break;
+                    case 'f': s.append('\f'); break;
+                    case 'u':
+                        if (i + 4 > json.length()) {
+                            throw new IllegalArgumentException("Malformed JSON.");
+                        }
+                        s.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                        i += 4;
+                        break;
+                    default: s.append(escaped);
+                }
+            }
+            throw new IllegalArgumentException("Malformed JSON.");
+        }
+
+        private static String parseNumber(String json, int[] pos) {
+            int start = pos[0];
+            int i = start;
+            while (i < json.length() && "+-.0123456789eE".indexOf(json.charAt(i)) >= 0) {
+                i++;
+            }
+            if (i == start) {
+                throw new IllegalArgumentException("Malformed JSON.");
+            }
+            pos[0] = i;
+            return json.substring(start, i);
+        }
+
+        private static void expect(String json, int[] pos, char expected) {
+            if (peek(json, pos) != expected) {
+                throw new IllegalArgumentException("Malformed JSON.");
+            }
+            pos[0]++;
+        }
+
+        private static char peek(String json, int[] pos) {
+            pos[0] = skipSpace(json, pos[0]);
+            if (pos[0] >= json.length()) {
+                throw new IllegalArgumentException("Malformed JSON.");
+            }
+            return json.charAt(pos[0]);
+        }
+
+        private static int skipSpace(String json, int i) {
+            while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package dinnerapp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+// Thread-safe core behind both the Swing UI and the HTTP server: user accounts
+// plus each user's dinner list and its DinnerStore. Lists live in a DinnerCache,
+// so a returning user is served from memory instead of re-reading their file, and
+// requests for different users only wait on each other if they share a lock stripe.
+class DinnerService implements Closeable {
+    private final UserStore users;
+    private final DinnerCache cache;
+    // Reads every user's files in the current directory, as DinnerStore does.
+    private final DinnerRecommender recommender = new DinnerRecommender(new File("."));
+
+    DinnerService(UserStore users) {
+        this(users, new DinnerCache());
+    }
+
+    DinnerService(UserStore users, DinnerCache cache) {
+        this.users = users;
+        this.cache = cache;
+        Metrics.gauge("cachedUsers", cache::users);
+        Metrics.gauge("cachedDinners", cache::dinners);
+        cache.addChangeListener(recommender::changed);
+    }
+
+    boolean authenticate(String username, String password) throws IOException {
+        return users.authenticate(username, password);
+    }
+
+    // A new user starts with the shared catalog of dinners.
+    boolean register(String username, String password) throws IOException {
+        if (!users.register(username, password)) {
+            return false;
+        }
+        new DinnerStore(username).startFromCatalog();
+        return true;
+    }
+
+    // Returns a private copy; later changes to the user's list do not show up in it.
+    List<Dinner> list(String user) throws IOException {
+        return cache.read(user, u -> DinnerStore.copyOf(u.dinners));
+    }
+
+    int add(String user, Dinner dinner) throws IOException {
+        return cache.write(user, u -> {
+            u.dinners.add(dinner);
+            u.store.logAdd(dinner);
+            u.picker.added(dinner);
+            recommender.changed(user);
+            return u.dinners.size() - 1;
+        });
+    }
+
+    // Appends all of added as one batched write. Returns the index of the first.
+    int addAll(String user, List<Dinner> added) throws IOException {
+        return cache.write(user, u -> {
+            int first = u.dinners.size();
+            u.dinners.addAll(added);
+            u.store.logAddAll(added);
+            for (Dinner dinner : added) {
+                u.picker.added(dinner);
+            }
+            recommender.changed(user);
+            return first;
+        });
+    }
+
+    // Renames or redescribes the dinner at index, and reweights it unless weight is
+    // null, keeping when it was added and how often it was picked.
+    void edit(String user, int index, String name, String description, Double weight) throws IOException {
+        cache.write(user, u -> {
+            Dinner existing = u.dinners.get(index);
+            Dinner edited = existing.edited(name, description);
+            if (weight != null) {
+                edited = edited.weighted(weight);
+            }
+            DinnerEdit edit = DinnerEdit.set(index, existing, edited);
+            edit.applyTo(u.dinners);
+            logged(u, List.of(edit));
+            recommender.changed(user);
+            return null;
+        });
+    }
+
+    void remove(String user, int index) throws IOException {
+        cache.write(user, u -> {
+            u.dinners.remove(index);
+            u.store.logRemove(index);
+            u.picker.removed(index);
+            recommender.changed(user);
+            return null;
+        });
+    }
+
+    // Applies a change made of several edits as one: all of them or none, logged
+    // in one journal write. Returns the edits as applied, each rebased on the list
+    // (see DinnerEdit.rebasedOn), for the caller to apply to its own copy. Throws
+    // IllegalStateException, leaving the list as it was, if an edit no longer
+    // matches the list, e.g. because another instance changed it since.
+    List<DinnerEdit> apply(String user, List<DinnerEdit> edits) throws IOException {
+        return cache.write(user, u -> {
+            List<DinnerEdit> applied = new ArrayList<>(edits.size());
+            try {
+                for (DinnerEdit edit : edits) {
+                    DinnerEdit rebased = edit.rebasedOn(u.dinners);
+                    rebased.applyTo(u.dinners);
+                    applied.add(rebased);
+                }
+            } catch (IllegalStateException e) {
+                for (int i = applied.size() - 1; i >= 0; i--) {
+                    applied.get(i).inverse().applyTo(u.dinners);
+                }
+                throw e;
+            }
+            logged(u, applied);
+            recommender.changed(user);
+            return applied;
+        });
+    }
+
+    // Picks a dinner the user will probably like, going by what they and others
+    // picked (see DinnerRecommender), or else as random(user, 1, avoid) does,
+    // and counts the pick on it. Returns the edit that counted it, for the caller
+    // to apply to its own copy of the list, or null if the user has no dinners.
+    DinnerEdit pick(String user, int avoid) throws IOException {
+        return cache.write(user, u -> {
+            if (u.dinners.isEmpty()) {
+                return null;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int index = recommender.suggest(user, u.dinners, u.picker, avoid, random);
+            if (index < 0) {
+                index = u.picker.pick(random, avoid);
+            }
+            Dinner dinner = u.dinners.get(index);
+            DinnerEdit edit = DinnerEdit.set(index, dinner, dinner.picked());
+            edit.applyTo(u.dinners);
+            logged(u, List.of(edit));
+            recommender.changed(user);
+            return edit;
+        });
+    }
+
+    // Journals edits already applied to u.dinners and passes them to the picker.
+    private static void logged(DinnerCache.UserDinners u, List<DinnerEdit> edits) {
+        u.store.logEdits(edits);
+        for (DinnerEdit edit : edits) {
+            switch (edit.kind) {
+                case INSERT:
+                    u.picker.inserted(edit.index, edit.after);
+                    break;
+                case SET:
+                    u.picker.changed(edit.index, edit.after);
+                    break;
+                default:
+                    u.picker.removed(edit.index);
+            }
+        }
+    }
+
+    // Returns null if the user has no dinners.
+    Dinner random(String user) throws IOException {
+        List<Dinner> picks = random(user, 1, 0);
+        return picks.isEmpty() ? null : picks.get(0);
+    }
+
+    // Draws count dinners, weighted by Dinner.getWeight(), skipping any of the
+    // user's last avoid picks while other dinners remain (see DinnerPicker).
+    // Returns an empty list if the user has no dinners.
+    List<Dinner> random(String user, int count, int avoid) throws IOException {
+        int[] picks = new int[count];
+        return cache.read(user, u -> {
+            if (u.dinners.isEmpty()) {
+                return List.of();
+            }
+            u.picker.pick(ThreadLocalRandom.current(), avoid, picks);
+            Dinner[] result = new Dinner[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = u.dinners.get(picks[i]);
+            }
+            return Arrays.asList(result);
+        });
+    }
+
+    // Called with the username when another instance changed that user's dinners.
+    void addChangeListener(Consumer<String> listener) {
+        cache.addChangeListener(listener);
+    }
+
+    DinnerCache cache() {
+        return cache;
+    }
+
+    // Drops the user's list from memory; pending writes still reach the disk.
+    void release(String user) {
+        cache.invalidate(user);
+    }
+
+    @Override
+    public void close() {
+        recommender.close();
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,361 @@
+package dinnerapp;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Sorted orders over a dinner list, kept up to date as the list changes so a
+// view can be switched without re-sorting. Each dinner has a node in a tree kept
+// in list order and one in the tree of each sorted order in use. The trees are
+// treaps with subtree sizes and parent links, so mapping a list position to its
+// row in an order, or a row back to its position, and every insert, replace
+// and remove cost O(log n).
+//
+// Like DinnerSearchIndex it stays dormant until a sorted order is first asked
+// for; the trees for an order are built on first use and maintained from then
+// on. Used on the EDT only.
+class DinnerSortIndex {
+    enum Order {
+        LIST("List order", null),
+        NAME("Name", Comparator.comparing(Dinner::getName, String.CASE_INSENSITIVE_ORDER)),
+        NEWEST("Newest", Comparator.comparingLong(Dinner::getCreated).reversed()),
+        MOST_PICKED("Most picked", Comparator.comparingInt(Dinner::getPicks).reversed()
+                .thenComparing(Dinner::getName, String.CASE_INSENSITIVE_ORDER));
+
+        final String label;
+        final Comparator<Dinner> comparator;
+
+        Order(String label, Comparator<Dinner> comparator) {
+            this.label = label;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final class Entry {
+        Dinner dinner;
+        // Breaks ties between equal dinners, so every order is total.
+        final long serial;
+        final Node inList;
+        final Node[] sorted = new Node[Order.values().length];
+
+        Entry(Dinner dinner, long serial) {
+            this.dinner = dinner;
+            this.serial = serial;
+            inList = new Node(this);
+        }
+    }
+
+    private static final class Node {
+        final Entry entry;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Node left;
+        Node right;
+        Node parent;
+        int size = 1;
+
+        Node(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    private final Tree list = new Tree();
+    private final Tree[] sorted = new Tree[Order.values().length];
+    private Order order = Order.LIST;
+    private boolean built;
+    private long nextSerial;
+
+    Order order() {
+        return order;
+    }
+
+    boolean isSorted() {
+        return order != Order.LIST;
+    }
+
+    // Switches to order, building its tree from dinners the first time.
+    void setOrder(Order order, List<Dinner> dinners) {
+        this.order = order;
+        if (order == Order.LIST || sorted[order.ordinal()] != null) {
+            return;
+        }
+        if (!built) {
+            Node[] nodes = new Node[dinners.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = new Entry(dinners.get(i), nextSerial++).inList;
+            }
+            list.build(nodes);
+            built = true;
+        }
+        Entry[] entries = new Entry[list.size()];
+        list.collect(list.root, entries, 0);
+        // Dinners are immutable, so the comparisons can run on several threads.
+        Arrays.parallelSort(entries, comparator(order));
+        Node[] nodes = new Node[entries.length];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = entries[i].sorted[order.ordinal()] = new Node(entries[i]);
+        }
+        Tree tree = new Tree();
+        tree.build(nodes);
+        sorted[order.ordinal()] = tree;
+    }
+
+    // Forgets the list, e.g. when it was replaced; the order stays selected and
+    // is rebuilt by the next setOrder.
+    void reset() {
+        list.root = null;
+        Arrays.fill(sorted, null);
+        built = false;
+    }
+
+    // The list position shown at row in the current order.
+    int positionAt(int row) {
+        if (order == Order.LIST) {
+            return row;
+        }
+        return Tree.rank(sorted[order.ordinal()].get(row).entry.inList);
+    }
+
+    // The row the dinner at position shows in, in the current order.
+    int rowOf(int position) {
+        if (order == Order.LIST) {
+            return position;
+        }
+        return Tree.rank(list.get(position).entry.sorted[order.ordinal()]);
+    }
+
+    void inserted(int position, Dinner dinner) {
+        if (!built) {
+            return;
+        }
+        Entry entry = new Entry(dinner, nextSerial++);
+        list.insertAt(position, entry.inList);
+        for (Order o : Order.values()) {
+            if (sorted[o.ordinal()] != null) {
+                insertSorted(o, entry);
+            }
+        }
+    }
+
+    void changed(int position, Dinner dinner) {
+        if (!built) {
+            return;
+        }
+        Entry entry = list.get(position).entry;
+        for (Order o : Order.values()) {
+            if (sorted[o.ordinal()] != null) {
+                sorted[o.ordinal()].remove(entry.sorted[o.ordinal()]);
+            }
+        }
+        entry.dinner = dinner;
+        for (Order o : Order.values()) {
+            if (sorted[o.ordinal()] != null) {
+                insertSorted(o, entry);
+            }
+        }
+    }
+
+    void removed(int position) {
+        if (!built) {
+            return;
+        }
+        Entry entry = list.get(position).entry;
+        list.remove(entry.inList);
+        for (Order o : Order.values()) {
+            if (sorted[o.ordinal()] != null) {
+                sorted[o.ordinal()].remove(entry.sorted[o.ordinal()]);
+            }
+        }
+    }
+
+    private void insertSorted(Order o, Entry entry) {
+        Tree tree = sorted[o.ordinal()];
+        Node node = new Node(entry);
+        entry.sorted[o.ordinal()] = node;
+        tree.insertAt(tree.rankFor(entry, comparator(o)), node);
+    }
+
+    private static Comparator<Entry> comparator(Order order) {
+        Comparator<Dinner> byDinner = order.comparator;
+        return (a, b) -> {
+            int c = byDinner.compare(a.dinner, b.dinner);
+            return c != 0 ? c : Long.compare(a.serial, b.serial);
+        };
+    }
+
+    // Treap ordered by position (rank), with split and merge by rank.
+    private static final class Tree {
+        Node root;
+        // Results of split(), to avoid allocating a pair per call.
+        private Node splitLeft;
+        private Node splitRight;
+
+        int size() {
+            return size(root);
+        }
+
+        Node get(int rank) {
+            Node node = root;
+            while (true) {
+                int leftSize = size(node.left);
+                if (rank < leftSize) {
+                    node = node.left;
+                } else if (rank == leftSize) {
+                    return node;
+                } else {
+                    rank -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        static int rank(Node node) {
+            int rank = size(node.left);
+            for (Node n = node; n.parent != null; n = n.parent) {
+                if (n == n.parent.right) {
+                    rank += size(n.parent.left) + 1;
+                }
+            }
+            return rank;
+        }
+
+        // Stores the entries under node into entries from start, in order, and
+        // returns the index past the last.
+        int collect(Node node, Entry[] entries, int start) {
+            while (node != null) {
+                start = collect(node.left, entries, start);
+                entries[start++] = node.entry;
+                node = node.right;
+            }
+            return start;
+        }
+
+        // How many entries sort before entry.
+        int rankFor(Entry entry, Comparator<Entry> comparator) {
+            int rank = 0;
+            Node node = root;
+            while (node != null) {
+                if (comparator.compare(entry, node.entry) > 0) {
+                    rank += size(node.left) + 1;
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+            }
+            return rank;
+        }
+
+        void insertAt(int rank, Node node) {
+            split(root, rank);
+            Node right = splitRight;
+            setRoot(merge(merge(splitLeft, node), right));
+        }
+
+        void remove(Node node) {
+            split(root, rank(node));
+            Node left = splitLeft;
+            split(splitRight, 1);
+            setRoot(merge(left, splitRight));
+            node.left = node.right = node.parent = null;
+            node.size = 1;
+        }
+
+        // Builds the tree from nodes already in order, in O(n): a Cartesian tree
+        // on the nodes' priorities, built with a stack of the rightmost path.
+        void build(Node[] nodes) {
+            Node[] stack = new Node[Math.max(1, nodes.length)];
+            int top = 0;
+            for (Node node : nodes) {
+                Node last = null;
+                while (top > 0 && stack[top - 1].priority < node.priority) {
+                    last = stack[--top];
+                }
+                node.left = last;
+                if (last != null) {
+                    last.parent = node;
+                }
+                if (top > 0) {
+                    stack[top - 1].right = node;
+                    node.parent = stack[top - 1];
+                }
+                stack[top++] = node;
+            }
+            setRoot(top > 0 ? stack[0] : null);
+            if (root != null) {
+                computeSizes(root);
+            }
+        }
+
+        private static int computeSizes(Node node) {
+            node.size = 1 + (node.left != null ? computeSizes(node.left) : 0)
+                    + (node.right != null ? computeSizes(node.right) : 0);
+            return node.size;
+        }
+
+        private void setRoot(Node node) {
+            root = node;
+            if (node != null) {
+                node.parent = null;
+            }
+        }
+
+        // Splits t into its first k nodes (splitLeft) and the rest (splitRight).
+        private void split(Node t, int k) {
+            if (t == null) {
+                splitLeft = splitRight = null;
+                return;
+            }
+            if (size(t.left) < k) {
+                split(t.right, k - size(t.left) - 1);
+                t.right = splitLeft;
+                if (splitLeft != null) {
+                    splitLeft.parent = t;
+                }
+                update(t);
+                splitLeft = t;
+            } else {
+                split(t.left, k);
+                t.left = splitRight;
+                if (splitRight != null) {
+                    splitRight.parent = t;
+                }
+                update(t);
+                splitRight = t;
+            }
+        }
+
+        private static Node merge(Node a, Node b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            if (a.priority > b.priority) {
+                Node merged = merge(a.right, b);
+                a.right = merged;
+                merged.parent = a;
+                update(a);
+                return a;
+            }
+            Node merged = merge(a, b.left);
+            b.left = merged;
+            merged.parent = b;
+            update(b);
+            return b;
+        }
+
+        private static void update(Node node) {
+            node.size = 1 + size(node.left) + size(node.right);
+        }
+
+        private static int size(Node node) {
+            return node == null ? 0 : node.size;
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package dinnerapp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Per-user dinner storage: a snapshot (<user>_dinners.dat) plus an append-only
+// journal of mutations (<user>_dinners.journal). Once the journal grows past
+// COMPACT_THRESHOLD it is rotated and folded into a new snapshot in the background.
+//
+// Records are logged into a queue and written with one flush. Changes made with
+// change() are written before it returns, and close() writes whatever is left;
+// anything else logged is written on a single shared writer thread.
+//
+// Several app instances may share the directory. Every write holds
+// <user>_dinners.lock (see AtomicFiles), opens the journal afresh and fsyncs it,
+// so appends from different processes never interleave or land in a journal that
+// was rotated away. change() holds the lock from before the list is read until
+// its records are written, so a change is never logged against a list another
+// instance has changed in between. Snapshots are replaced atomically. Changes made
+// by another instance are reported to the onExternalChange listener so the caller
+// can reload.
+//
+// A user created with startFromCatalog() has an OverlayDinnerList over the shared
+// DinnerCatalog, and their snapshot holds only their changes to it; the journal
+// is the same either way.
+class DinnerStore implements Closeable {
+    static final long COMPACT_THRESHOLD = 64 * 1024;
+    // Snapshots at least this large are memory-mapped and decoded lazily.
+    static final long MAPPED_THRESHOLD = 1024 * 1024;
+    // "columnar" keeps lists in a ColumnarDinnerList instead of Dinner objects or
+    // a mapping, for the smallest heap per dinner.
+    static final boolean COLUMNAR = "columnar".equals(System.getProperty("dinner.storage"));
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_SET = 2;
+    private static final byte OP_REMOVE = 3;
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> daemon(r, "dinner-writer"));
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> daemon(r, "dinner-compactor"));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            WRITER.shutdown();
+            try {
+                WRITER.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+    }
+
+    private static class Record {
+        final byte op;
+        final int index;
+        final Dinner dinner;
+        final List<Dinner> snapshot;
+        // Dinners appended in one go; written as one OP_ADD each.
+        final List<Dinner> batch;
+
+        Record(byte op, int index, Dinner dinner, List<Dinner> snapshot) {
+            this(op, index, dinner, snapshot, null);
+        }
+
+        Record(byte op, int index, Dinner dinner, List<Dinner> snapshot, List<Dinner> batch) {
+            this.op = op;
+            this.index = index;
+            this.dinner = dinner;
+            this.snapshot = snapshot;
+            this.batch = batch;
+        }
+    }
+
+    private final File snapshotFile;
+    private final File journalFile;
+    private final File rotatedJournalFile;
+    private final File lockFile;
+    private final ArrayList<Record> pending = new ArrayList<>();
+    private final List<Closeable> watches = new ArrayList<>();
+    private boolean flushScheduled;
+    private List<Dinner> dinners;
+    private long queuedLength;
+    private volatile boolean compacting;
+
+    // Guarded by this. What the files looked like after our own last write, so a
+    // difference means another instance wrote to them.
+    private boolean open;
+    private long knownJournalLength;
+    private long knownSnapshotStamp;
+
+    DinnerStore(String user) {
+        snapshotFile = new File(user + "_dinners.dat");
+        journalFile = new File(user + "_dinners.journal");
+        rotatedJournalFile = new File(user + "_dinners.journal.old");
+        lockFile = new File(user + "_dinners.lock");
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    synchronized List<Dinner> load() throws IOException {
+        long start = System.nanoTime();
+        AtomicFiles.locked(lockFile, () -> {
+            loadLocked();
+            // Before letting go, or another instance's write in between would
+            // pass for part of what we loaded.
+            open = true;
+            remember();
+            queuedLength = journalFile.length();
+            return null;
+        });
+        Metrics.record(Metrics.Op.LOAD_DINNERS, start);
+        return dinners;
+    }
+
+    // The user's list as load() would return it, read without writing to or
+    // keeping open any of their files, for readers other than the user's own
+    // store, e.g. DinnerRecommender.
+    static List<Dinner> peek(String user) throws IOException {
+        DinnerStore store = new DinnerStore(user);
+        return AtomicFiles.locked(store.lockFile, () -> {
+            long snapshotEpoch = store.readSnapshot(false);
+            store.replay(store.rotatedJournalFile, snapshotEpoch, false);
+            store.replay(store.journalFile, snapshotEpoch, false);
+            return store.dinners;
+        });
+    }
+
+    private void loadLocked() throws IOException {
+        long snapshotEpoch = readSnapshot(true);
+        long rotatedEpoch = replay(rotatedJournalFile, snapshotEpoch, true);
+        long currentEpoch = replay(journalFile, snapshotEpoch, true);
+        if (rotatedJournalFile.exists()) {
+            // A compaction was interrupted; fold everything into a fresh snapshot.
+            long epoch = Math.max(snapshotEpoch, Math.max(rotatedEpoch, currentEpoch));
+            writeSnapshot(dinners, epoch);
+            rotatedJournalFile.delete();
+            journalFile.delete();
+            startJournal(epoch + 1);
+        } else if (currentEpoch > snapshotEpoch) {
+            startJournal(currentEpoch);
+        } else {
+            journalFile.delete();
+            startJournal(snapshotEpoch + 1);
+        }
+    }
+
+    // Reads the snapshot into dinners and returns its epoch. With repair, a
+    // Java-serialized snapshot is rewritten in the binary format.
+    private long readSnapshot(boolean repair) throws IOException {
+        dinners = COLUMNAR ? new ColumnarDinnerList() : new ArrayList<>();
+        long snapshotEpoch = 0;
+        // A zero-length snapshot is what an interrupted in-place save used to leave.
+        if (snapshotFile.length() > 0) {
+            boolean legacy = DinnerCodec.isLegacy(snapshotFile);
+            if (!legacy && DinnerCodec.isOverlay(snapshotFile)) {
+                byte[] bytes = Files.readAllBytes(snapshotFile.toPath());
+                Metrics.bytesRead(bytes.length);
+                ByteBuffer buf = ByteBuffer.wrap(bytes);
+                dinners = DinnerCodec.readOverlay(buf);
+                snapshotEpoch = buf.getLong(DinnerCodec.EPOCH_OFFSET);
+            } else if (!legacy && COLUMNAR) {
+                ColumnarDinnerList columnar = new ColumnarDinnerList();
+                byte[] bytes = Files.readAllBytes(snapshotFile.toPath());
+                Metrics.bytesRead(bytes.length);
+                snapshotEpoch = DinnerCodec.readInto(ByteBuffer.wrap(bytes), columnar);
+                dinners = columnar;
+            } else if (!legacy && snapshotFile.length() >= MAPPED_THRESHOLD && snapshotFile.length() <= Integer.MAX_VALUE) {
+                MappedDinnerList mapped = new MappedDinnerList(snapshotFile);
+                dinners = mapped;
+                snapshotEpoch = mapped.epoch();
+            } else {
+                Metrics.bytesRead(snapshotFile.length());
+                DinnerCodec.Snapshot snapshot = DinnerCodec.readFile(snapshotFile);
+                dinners = snapshot.dinners;
+                snapshotEpoch = snapshot.epoch;
+                if (legacy && repair) {
+                    writeSnapshot(dinners, snapshotEpoch);
+                }
+                if (COLUMNAR) {
+                    dinners = new ColumnarDinnerList(dinners);
+                }
+            }
+        }
+        return snapshotEpoch;
+    }
+
+    // Gives a user with no dinners saved yet the current catalog as their list,
+    // saved as an overlay of it. Returns false if they already have a list.
+    boolean startFromCatalog() throws IOException {
+        DinnerCatalog catalog = DinnerCatalog.current();
+        catalog.save();
+        return AtomicFiles.locked(lockFile, () -> {
+            if (snapshotFile.exists() || journalFile.exists()) {
+                return false;
+            }
+            writeSnapshot(new OverlayDinnerList(catalog), 0);
+            return true;
+        });
+    }
+
+    // Calls listener, on a background thread, when another instance changes this
+    // user's files. The in-memory list is then out of date and should be reloaded.
+    void onExternalChange(Runnable listener) throws IOException {
+        Runnable check = () -> {
+            if (changedExternally()) {
+                listener.run();
+            }
+        };
+        synchronized (this) {
+            watches.add(FileWatcher.watch(snapshotFile, check));
+            watches.add(FileWatcher.watch(journalFile, check));
+        }
+    }
+
+    void logAdd(Dinner dinner) {
+        enqueue(OP_ADD, -1, dinner);
+    }
+
+    void logSet(int index, Dinner dinner) {
+        enqueue(OP_SET, index, dinner);
+    }
+
+    void logRemove(int index) {
+        enqueue(OP_REMOVE, index, null);
+    }
+
+    // Logs a change made of several edits so it reaches the journal in one write.
+    void logEdits(List<DinnerEdit> edits) {
+        List<Record> records = new ArrayList<>(edits.size() + 1);
+        long length = 0;
+        for (DinnerEdit edit : edits) {
+            byte op = edit.kind == DinnerEdit.Kind.INSERT ? OP_ADD : edit.kind == DinnerEdit.Kind.SET ? OP_SET : OP_REMOVE;
+            records.add(new Record(op, edit.index, edit.after, null));
+            length += 1 + Integer.BYTES + (edit.after != null ? DinnerCodec.encodedLength(edit.after) : 0);
+        }
+        enqueue(records, length);
+    }
+
+    // Logs dinners appended to the end of the list together, so they reach the
+    // journal in one write and one fsync however many there are. added must not
+    // change afterwards.
+    void logAddAll(List<Dinner> added) {
+        long length = 0;
+        for (Dinner dinner : added) {
+            length += 1 + Integer.BYTES + DinnerCodec.encodedLength(dinner);
+        }
+        enqueue(List.of(new Record(OP_ADD, -1, null, null, added)), length);
+    }
+
+    // Runs change, which logs to this store, while holding the user's lock file,
+    // and writes what it logged before letting go, so no other instance can write
+    // in between. change should check changedExternally() before relying on the
+    // list it logs against.
+    synchronized <T> T change(AtomicFiles.Action<T> change) throws IOException {
+        return AtomicFiles.locked(lockFile, () -> {
+            T result = change.run();
+            writePending();
+            return result;
+        });
+    }
+
+    // Blocks until everything logged so far has been written.
+    void flush() throws InterruptedException {
+        try {
+            WRITER.submit(this::flushPending).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (RejectedExecutionException e) {
+            flushPending();
+        }
+    }
+
+    // Blocks until every write and compaction queued so far, for any user, has
+    // finished; e.g. after closing stores, before reading their files back.
+    static void awaitWrites() throws InterruptedException {
+        try {
+            WRITER.submit(() -> { }).get();
+            COMPACTOR.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the hook waits for the writer instead.
+        }
+    }
+
+    // Writes anything still queued before returning, so a store opened for the
+    // same user afterwards, e.g. by DinnerCache after an eviction, reads it.
+    @Override
+    public void close() {
+        closeJournal();
+    }
+
+    // Runs on the writer thread, or inline once the shutdown hook has stopped it.
+    private static void write(Runnable task) {
+        try {
+            WRITER.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private synchronized void closeJournal() {
+        flushPending();
+        open = false;
+        for (Closeable watch : watches) {
+            try {
+                watch.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        watches.clear();
+    }
+
+    // Called on the thread that owns the dinners list, so the snapshot copy taken
+    // for a rotation matches exactly the records queued before it.
+    private void enqueue(byte op, int index, Dinner dinner) {
+        long length = 1 + Integer.BYTES;
+        if (dinner != null) {
+            length += DinnerCodec.encodedLength(dinner);
+        }
+        enqueue(List.of(new Record(op, index, dinner, null)), length);
+    }
+
+    private void enqueue(List<Record> records, long length) {
+        queuedLength += length;
+        Record compaction = null;
+        if (!compacting && queuedLength >= COMPACT_THRESHOLD) {
+            compacting = true;
+            queuedLength = Long.BYTES;
+            compaction = new Record((byte) 0, -1, null, copyOf(dinners));
+        }
+        synchronized (pending) {
+            pending.addAll(records);
+            if (compaction != null) {
+                pending.add(compaction);
+            }
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        write(this::flushPending);
+    }
+
+    static List<Dinner> copyOf(List<Dinner> dinners) {
+        if (dinners instanceof MappedDinnerList) {
+            return ((MappedDinnerList) dinners).copy();
+        }
+        if (dinners instanceof ColumnarDinnerList) {
+            return ((ColumnarDinnerList) dinners).copy();
+        }
+        if (dinners instanceof OverlayDinnerList) {
+            return ((OverlayDinnerList) dinners).copy();
+        }
+        return new ArrayList<>(dinners);
+    }
+
+    private synchronized void flushPending() {
+        try {
+            writePending();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private synchronized void writePending() throws IOException {
+        List<Record> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+        if (!open || batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            AtomicFiles.locked(lockFile, () -> {
+                appendBatch(batch);
+                return null;
+            });
+        } finally {
+            Metrics.record(Metrics.Op.SAVE_DINNERS, start);
+        }
+    }
+
+    // Caller holds this store's monitor and the lock file.
+    private void appendBatch(List<Record> batch) throws IOException {
+        boolean foreign = changedExternally();
+        FileOutputStream fos = null;
+        DataOutputStream out = null;
+        try {
+            for (Record record : batch) {
+                if (record.snapshot != null) {
+                    if (out != null) {
+                        out.flush();
+                        fos.getFD().sync();
+                        Metrics.bytesWritten(out.size());
+                        out.close();
+                        out = null;
+                    }
+                    if (foreign || rotatedJournalFile.exists()) {
+                        // Our copy misses another instance's changes, or that
+                        // instance is compacting; leave it to whoever reloads.
+                        compacting = false;
+                    } else {
+                        rotateAndCompact(record.snapshot);
+                    }
+                    continue;
+                }
+                if (out == null) {
+                    startJournal(nextEpoch());
+                    fos = new FileOutputStream(journalFile, true);
+                    out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+                }
+                if (record.batch != null) {
+                    for (Dinner dinner : record.batch) {
+                        out.writeByte(OP_ADD);
+                        out.writeInt(-1);
+                        DinnerCodec.writeDinner(out, dinner);
+                    }
+                    continue;
+                }
+                out.writeByte(record.op);
+                out.writeInt(record.index);
+                if (record.dinner != null) {
+                    DinnerCodec.writeDinner(out, record.dinner);
+                }
+            }
+            if (out != null) {
+                out.flush();
+                fos.getFD().sync();
+            }
+        } finally {
+            if (out != null) {
+                Metrics.bytesWritten(out.size());
+                out.close();
+            }
+        }
+        // Leave a foreign change visible so the watcher still reports it.
+        if (!foreign) {
+            remember();
+        }
+    }
+
+    private void rotateAndCompact(List<Dinner> copy) throws IOException {
+        long coveredEpoch = readJournalEpoch(journalFile);
+        Files.move(journalFile.toPath(), rotatedJournalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        startJournal(coveredEpoch + 1);
+        COMPACTOR.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                File temp = AtomicFiles.writeTemp(snapshotFile, out -> DinnerCodec.write(out, copy, coveredEpoch));
+                Metrics.bytesWritten(temp.length());
+                synchronized (this) {
+                    AtomicFiles.locked(lockFile, () -> {
+                        // Another instance may have folded the rotated journal in
+                        // already; then our snapshot is older than the one on disk.
+                        if (readJournalEpoch(rotatedJournalFile) == coveredEpoch) {
+                            AtomicFiles.commit(temp, snapshotFile);
+                            rotatedJournalFile.delete();
+                            knownSnapshotStamp = snapshotStamp();
+                        } else {
+                            temp.delete();
+                        }
+                        return null;
+                    });
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                compacting = false;
+                Metrics.record(Metrics.Op.COMPACT, start);
+            }
+        });
+    }
+
+    // Creates the journal with its epoch header unless it already has one.
+    private void startJournal(long epoch) throws IOException {
+        if (journalFile.length() >= Long.BYTES) {
+            return;
+        }
+        try (FileOutputStream fos = new FileOutputStream(journalFile);
+             DataOutputStream out = new DataOutputStream(fos)) {
+            out.writeLong(epoch);
+            out.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    // Epoch for a new journal: one past whatever the snapshot or a rotated
+    // journal already covers.
+    private long nextEpoch() throws IOException {
+        return Math.max(DinnerCodec.readEpoch(snapshotFile), readJournalEpoch(rotatedJournalFile)) + 1;
+    }
+
+    private static long readJournalEpoch(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readLong();
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    // Whether another instance wrote to this user's files since we loaded or last
+    // wrote them.
+    synchronized boolean changedExternally() {
+        return open && (journalFile.length() != knownJournalLength || snapshotStamp() != knownSnapshotStamp);
+    }
+
+    private void remember() {
+        knownJournalLength = journalFile.length();
+        knownSnapshotStamp = snapshotStamp();
+    }
+
+    private long snapshotStamp() {
+        return snapshotFile.lastModified() * 31 + snapshotFile.length();
+    }
+
+    private void writeSnapshot(List<Dinner> snapshot, long epoch) throws IOException {
+        DinnerCodec.writeFile(snapshotFile, snapshot, epoch);
+        Metrics.bytesWritten(snapshotFile.length());
+    }
+
+    // Applies the journal's records to dinners when it is newer than the snapshot.
+    // Returns the journal's epoch, or 0 if there is no usable journal. With
+    // repair, a record torn by a crash is cut off the end of the file.
+    private long replay(File file, long snapshotEpoch, boolean repair) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        long validLength = Long.BYTES;
+        long epoch;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            try {
+                epoch = in.readLong();
+            } catch (EOFException e) {
+                return 0;
+            }
+            if (epoch <= snapshotEpoch) {
+                return epoch;
+            }
+            try {
+                while (true) {
+                    byte op = in.readByte();
+                    int index = in.readInt();
+                    int length = 1 + Integer.BYTES;
+                    Dinner dinner = null;
+                    if (op != OP_REMOVE) {
+                        int bodyLength = in.readInt();
+                        dinner = DinnerCodec.readBody(in, bodyLength);
+                        length += Integer.BYTES + bodyLength;
+                    }
+                    // Instances writing the same user concurrently can log an
+                    // index that no longer exists; skip it rather than fail.
+                    if (op == OP_ADD) {
+                        // Appends log -1; an index is an insert, e.g. an undone removal.
+                        if (index >= 0 && index < dinners.size()) {
+                            dinners.add(index, dinner);
+                        } else {
+                            dinners.add(dinner);
+                        }
+                    } else if (index >= 0 && index < dinners.size()) {
+                        if (op == OP_REMOVE) {
+                            dinners.remove(index);
+                        } else {
+                            dinners.set(index, dinner);
+                        }
+                    }
+                    validLength += length;
+                }
+            } catch (EOFException e) {
+                // End of journal, or a record torn by a crash mid-append.
+            }
+        }
+        Metrics.bytesRead(validLength);
+        if (repair && validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return epoch;
+    }
+}
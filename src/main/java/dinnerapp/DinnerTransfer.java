@@ -0,0 +1,286 @@
+package dinnerapp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Streaming import and export of dinner lists as CSV (name,description,weight
+// with a header row) or JSON lines (one {"name", "description", "weight"} object
+// per line; weight is optional in both and defaults to 1).
+//
+// Import reads the file once, splitting it into chunks of records; chunks are
+// parsed and validated in parallel on the common fork-join pool while reading
+// continues. Only a few chunks are in flight at a time, so memory stays bounded
+// by the dinners themselves rather than the file's text.
+class DinnerTransfer {
+    enum Format {
+        CSV, JSON_LINES;
+
+        // By file extension: .csv is CSV, anything else JSON lines.
+        static Format of(File file) {
+            return file.getName().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSON_LINES;
+        }
+    }
+
+    // Told how many bytes have been read; returning false cancels the import.
+    interface Progress {
+        boolean update(long bytesRead);
+    }
+
+    // A parsed chunk, or the first error in it.
+    private static final class Chunk {
+        final Dinner[] dinners;
+        final String error;
+
+        Chunk(Dinner[] dinners, String error) {
+            this.dinners = dinners;
+            this.error = error;
+        }
+    }
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final String CSV_HEADER = "name,description,weight";
+
+    private DinnerTransfer() {
+    }
+
+    static List<Dinner> importFile(File file, Progress progress) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in, Format.of(file), progress);
+        }
+    }
+
+    static void exportFile(File file, List<Dinner> dinners) throws IOException {
+        AtomicFiles.write(file, out -> write(out, Format.of(file), dinners));
+    }
+
+    // Throws InterruptedIOException if progress cancels, and IOException naming
+    // the line of the first record that does not parse.
+    static List<Dinner> read(InputStream in, Format format, Progress progress) throws IOException {
+        CountingInputStream counter = new CountingInputStream(in);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8), 64 * 1024);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int maxInFlight = pool.getParallelism() * 2;
+        ArrayDeque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+        List<Dinner> dinners = new ArrayList<>();
+        try {
+            List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+            int line = 0;
+            int chunkLine = 1;
+            String record;
+            StringBuilder pending = null;
+            while ((record = reader.readLine()) != null) {
+                line++;
+                if (format == Format.CSV) {
+                    // A quoted field can span lines; keep reading until its quotes balance.
+                    if (pending != null) {
+                        record = pending.append('\n').append(record).toString();
+                        pending = null;
+                    }
+                    if (!quotesBalanced(record)) {
+                        pending = new StringBuilder(record);
+                        continue;
+                    }
+                    if (line == 1 && record.trim().toLowerCase(Locale.ROOT).startsWith("name,")) {
+                        chunkLine = 2;
+                        continue;
+                    }
+                }
+                chunk.add(record);
+                if (chunk.size() == CHUNK_SIZE) {
+                    if (!progress.update(counter.count)) {
+                        throw new InterruptedIOException("Import cancelled.");
+                    }
+                    if (inFlight.size() == maxInFlight) {
+                        collect(inFlight.poll(), dinners);
+                    }
+                    inFlight.add(pool.submit(parser(chunk, format, chunkLine)));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                    chunkLine = line + 1;
+                }
+            }
+            if (pending != null) {
+                throw new IOException("Line " + line + ": unterminated quoted field.");
+            }
+            if (!chunk.isEmpty()) {
+                inFlight.add(pool.submit(parser(chunk, format, chunkLine)));
+            }
+            while (!inFlight.isEmpty()) {
+                collect(inFlight.poll(), dinners);
+            }
+            progress.update(counter.count);
+            return dinners;
+        } finally {
+            for (ForkJoinTask<Chunk> task : inFlight) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    static void write(OutputStream out, Format format, List<Dinner> dinners) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        for (Dinner dinner : dinners) {
+            if (format == Format.CSV) {
+                writer.write(csvField(dinner.getName()));
+                writer.write(',');
+                writer.write(csvField(dinner.getDescription()));
+                writer.write(',');
+                if (dinner.getWeight() != 1) {
+                    writer.write(Double.toString(dinner.getWeight()));
+                }
+            } else {
+                writer.write(DinnerServer.Json.dinner(dinner));
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private static ForkJoinTask<Chunk> parser(List<String> records, Format format, int firstLine) {
+        return ForkJoinTask.adapt(() -> {
+            Dinner[] parsed = new Dinner[records.size()];
+            int count = 0;
+            int line = firstLine;
+            for (String record : records) {
+                if (!record.isBlank()) {
+                    try {
+                        parsed[count++] = format == Format.CSV ? parseCsv(record) : parseJson(record);
+                    } catch (IllegalArgumentException e) {
+                        return new Chunk(null, "Line " + line + ": " + e.getMessage());
+                    }
+                }
+                // Lines joined for a multi-line CSV field count once per line.
+                line += 1 + countNewlines(record);
+            }
+            return new Chunk(count == parsed.length ? parsed : Arrays.copyOf(parsed, count), null);
+        });
+    }
+
+    private static void collect(ForkJoinTask<Chunk> task, List<Dinner> dinners) throws IOException {
+        try {
+            Chunk chunk = task.get();
+            if (chunk.error != null) {
+                throw new IOException(chunk.error);
+            }
+            for (Dinner dinner : chunk.dinners) {
+                dinners.add(dinner);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted.");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static Dinner parseJson(String record) {
+        Map<String, String> fields = DinnerServer.Json.parseObject(record);
+        return dinner(fields.getOrDefault("name", ""), fields.getOrDefault("description", ""), fields.get("weight"));
+    }
+
+    private static Dinner parseCsv(String record) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        if (fields.size() > 3) {
+            throw new IllegalArgumentException("expected at most 3 fields, found " + fields.size() + ".");
+        }
+        return dinner(fields.get(0), fields.size() > 1 ? fields.get(1) : "", fields.size() > 2 ? fields.get(2) : null);
+    }
+
+    private static Dinner dinner(String name, String description, String weight) {
+        if (name.trim().isEmpty()) {
+            throw new IllegalArgumentException("dinner name is empty.");
+        }
+        if (weight == null || weight.isBlank()) {
+            return new Dinner(name, description);
+        }
+        return new Dinner(name, description, Double.parseDouble(weight.trim()));
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static boolean quotesBalanced(String record) {
+        int quotes = 0;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 == 0;
+    }
+
+    private static int countNewlines(String record) {
+        int count = 0;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
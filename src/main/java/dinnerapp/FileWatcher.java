@@ -0,0 +1,90 @@
+package dinnerapp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Tells listeners when a file changes on disk, so an instance can notice another
+// instance's writes without polling. One daemon thread per watched directory
+// blocks on a WatchService; listeners run on that thread and should be quick.
+// Our own writes are reported too, so listeners check whether a change is foreign.
+class FileWatcher {
+    private static final Map<Path, FileWatcher> WATCHERS = new ConcurrentHashMap<>();
+
+    private final Path dir;
+    private final WatchService service;
+    private final Map<String, List<Runnable>> listeners = new ConcurrentHashMap<>();
+
+    private FileWatcher(Path dir) throws IOException {
+        this.dir = dir;
+        service = dir.getFileSystem().newWatchService();
+        dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        Thread thread = new Thread(this::run, "dinner-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Calls listener whenever file is created, modified or deleted. Closing the
+    // returned handle stops the calls.
+    static Closeable watch(File file, Runnable listener) throws IOException {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        FileWatcher watcher;
+        try {
+            watcher = WATCHERS.computeIfAbsent(path.getParent(), dir -> {
+                try {
+                    return new FileWatcher(dir);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        List<Runnable> list = watcher.listeners.computeIfAbsent(path.getFileName().toString(), name -> new CopyOnWriteArrayList<>());
+        list.add(listener);
+        return () -> list.remove(listener);
+    }
+
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            // A burst of writes arrives as several events; call each listener once.
+            Set<Runnable> changed = new LinkedHashSet<>();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    listeners.values().forEach(changed::addAll);
+                    continue;
+                }
+                List<Runnable> list = listeners.get(event.context().toString());
+                if (list != null) {
+                    changed.addAll(list);
+                }
+            }
+            for (Runnable listener : changed) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (!key.reset()) {
+                WATCHERS.remove(dir);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dinnerapp;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Decodes and scales button icons on a background pool. Scaled results are cached
+// in .iconcache/ under the SHA-256 of the source image and the target size, so
+// later starts only decode a small PNG.
+class IconCache {
+    private static final File CACHE_DIR = new File(".iconcache");
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.min(4, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread thread = new Thread(r, "icon-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // A blank icon of the final size, so layout does not shift when the real one arrives.
+    static ImageIcon placeholder(int size) {
+        return new ImageIcon(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    // Loads imagePath scaled to size x size and hands it to callback on the EDT.
+    static void load(String imagePath, int size, Consumer<ImageIcon> callback) {
+        POOL.execute(() -> {
+            try {
+                BufferedImage image = loadScaled(new File(imagePath), size);
+                if (image != null) {
+                    ImageIcon icon = new ImageIcon(image);
+                    SwingUtilities.invokeLater(() -> callback.accept(icon));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private static BufferedImage loadScaled(File source, int size) throws IOException {
+        byte[] bytes = Files.readAllBytes(source.toPath());
+        File cached = new File(CACHE_DIR, sha256(bytes) + "-" + size + ".png");
+        if (cached.exists()) {
+            BufferedImage image = ImageIO.read(cached);
+            if (image != null) {
+                return image;
+            }
+        }
+        BufferedImage original = ImageIO.read(source);
+        if (original == null) {
+            return null;
+        }
+        BufferedImage scaled = scale(original, size);
+        CACHE_DIR.mkdirs();
+        File temp = new File(CACHE_DIR, cached.getName() + ".tmp");
+        if (ImageIO.write(scaled, "png", temp)) {
+            Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return scaled;
+    }
+
+    // Halves the image until it is close to the target, then draws the final step
+    // bicubic; this matches SCALE_SMOOTH quality at a fraction of the cost.
+    private static BufferedImage scale(BufferedImage image, int size) {
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(size, width / 2);
+            height = Math.max(size, height / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, width, height, null);
+            g.dispose();
+            current = next;
+        } while (width != size || height != size);
+        return current;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
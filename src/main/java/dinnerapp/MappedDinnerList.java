@@ -0,0 +1,112 @@
+package dinnerapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// A dinner list backed by a memory-mapped binary snapshot. Opening it only walks
+// the record length prefixes to build an offset index; a Dinner is decoded when
+// get() asks for it. Dinners added or replaced after opening are held on the heap.
+class MappedDinnerList extends AbstractList<Dinner> implements RandomAccess {
+    private final MappedByteBuffer buffer;
+    private int[] offsets;
+    private Dinner[] overrides;
+    private int size;
+
+    MappedDinnerList(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        DinnerCodec.checkHeader(buffer);
+        size = buffer.getInt(DinnerCodec.COUNT_OFFSET);
+        offsets = new int[Math.max(size, 10)];
+        overrides = new Dinner[offsets.length];
+        int offset = DinnerCodec.HEADER_SIZE;
+        for (int i = 0; i < size; i++) {
+            offsets[i] = offset;
+            offset += Integer.BYTES + buffer.getInt(offset);
+        }
+    }
+
+    private MappedDinnerList(MappedDinnerList other) {
+        buffer = other.buffer;
+        offsets = Arrays.copyOf(other.offsets, other.size);
+        overrides = Arrays.copyOf(other.overrides, other.size);
+        size = other.size;
+    }
+
+    long epoch() {
+        return buffer.getLong(DinnerCodec.EPOCH_OFFSET);
+    }
+
+    // Copies the index, not the dinners, so it is cheap enough to take on the EDT.
+    MappedDinnerList copy() {
+        return new MappedDinnerList(this);
+    }
+
+    @Override
+    public Dinner get(int index) {
+        Objects.checkIndex(index, size);
+        Dinner dinner = overrides[index];
+        return dinner != null ? dinner : DinnerCodec.decode(buffer, offsets[index]);
+    }
+
+    // Same as get(index).getWeight(), without decoding the dinner.
+    double weight(int index) {
+        Objects.checkIndex(index, size);
+        Dinner dinner = overrides[index];
+        return dinner != null ? dinner.getWeight() : DinnerCodec.weight(buffer, offsets[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Dinner set(int index, Dinner dinner) {
+        Dinner old = get(index);
+        overrides[index] = dinner;
+        return old;
+    }
+
+    @Override
+    public void add(int index, Dinner dinner) {
+        Objects.checkIndex(index, size + 1);
+        if (size == offsets.length) {
+            int capacity = Math.max(10, offsets.length + (offsets.length >> 1));
+            offsets = Arrays.copyOf(offsets, capacity);
+            overrides = Arrays.copyOf(overrides, capacity);
+        }
+        System.arraycopy(offsets, index, offsets, index + 1, size - index);
+        System.arraycopy(overrides, index, overrides, index + 1, size - index);
+        offsets[index] = -1;
+        overrides[index] = dinner;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Dinner remove(int index) {
+        Dinner old = get(index);
+        System.arraycopy(offsets, index + 1, offsets, index, size - index - 1);
+        System.arraycopy(overrides, index + 1, overrides, index, size - index - 1);
+        size--;
+        overrides[size] = null;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(overrides, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+}
@@ -0,0 +1,288 @@
+package dinnerapp;
+
+import javax.management.*;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Process-wide operation latencies and I/O counters. Call sites time an
+// operation with
+//
+//   long start = System.nanoTime();
+//   ...
+//   Metrics.record(Metrics.Op.SAVE_DINNERS, start);
+//
+// which only bumps atomic counters. Everything is published as MBeans under
+// "dinnerapp:" (one type=Latency bean per operation, plus type=Counters) and
+// summarised every dinner.metrics.logSeconds (default 60, 0 for never) in one
+// line covering that interval, e.g.
+//
+//   Metrics: saveDinners n=12 p50=1.1ms p99=4.2ms max=4.2ms read=0B written=3.1KB edtStall=0ms listSize=250
+final class Metrics {
+    enum Op {
+        LOAD_USERS("loadUsers"),
+        LOAD_DINNERS("loadDinners"),
+        SAVE_DINNERS("saveDinners"),
+        COMPACT("compact"),
+        REFRESH_LIST("refreshDinnerList"),
+        RECOMMEND("rebuildRecommendations"),
+        CHECK_DUPLICATE("checkDuplicate"),
+        FIND_DUPLICATES("findDuplicates"),
+        EDT_EVENT("edtEvent");
+
+        final String label;
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Op(String label) {
+            this.label = label;
+        }
+    }
+
+    // An EDT event running at least this long counts as a stall.
+    static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("dinner.metrics.stallMillis", 100));
+    static final long LOG_SECONDS = Long.getLong("dinner.metrics.logSeconds", 60);
+
+    private static final LongAdder bytesRead = new LongAdder();
+    private static final LongAdder bytesWritten = new LongAdder();
+    private static final LongAdder edtStallNanos = new LongAdder();
+    private static final LongAdder edtStalls = new LongAdder();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    static {
+        ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dinner-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Starting the platform MBean server takes tens of milliseconds; keep it
+        // off the startup path.
+        background.execute(Metrics::register);
+        if (LOG_SECONDS > 0) {
+            IntervalLog log = new IntervalLog();
+            background.scheduleAtFixedRate(log::print, LOG_SECONDS, LOG_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private Metrics() {
+    }
+
+    static void record(Op op, long startNanos) {
+        op.histogram.record(System.nanoTime() - startNanos);
+    }
+
+    static void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    static void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    // Publishes a value read when the counters are, e.g. a list size. A later
+    // gauge with the same name replaces it.
+    static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    // Times every event the EDT dispatches. Call on the EDT.
+    static void monitorEventQueue() {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new TimedEventQueue());
+    }
+
+    private static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Op op : Op.values()) {
+                Map<String, LongSupplier> attributes = new LinkedHashMap<>();
+                LatencyHistogram h = op.histogram;
+                attributes.put("Count", h::count);
+                attributes.put("MeanMicros", () -> {
+                    long count = h.count();
+                    return count == 0 ? 0 : h.totalNanos() / count / 1000;
+                });
+                attributes.put("P50Micros", () -> h.percentile(50) / 1000);
+                attributes.put("P99Micros", () -> h.percentile(99) / 1000);
+                attributes.put("P999Micros", () -> h.percentile(99.9) / 1000);
+                attributes.put("MaxMicros", () -> h.maxNanos() / 1000);
+                server.registerMBean(new Attributes(List.of(attributes)), new ObjectName("dinnerapp:type=Latency,name=" + op.label));
+            }
+            Map<String, LongSupplier> counters = new LinkedHashMap<>();
+            counters.put("BytesRead", bytesRead::sum);
+            counters.put("BytesWritten", bytesWritten::sum);
+            counters.put("EdtStalls", edtStalls::sum);
+            counters.put("EdtStallMillis", () -> edtStallNanos.sum() / 1_000_000);
+            server.registerMBean(new Attributes(List.of(counters, gauges)), new ObjectName("dinnerapp:type=Counters"));
+        } catch (JMException e) {
+            // Already registered by another class loader, e.g. under a test runner.
+            e.printStackTrace();
+        }
+    }
+
+    // Keeps the counts at the last log line so the next one covers only the
+    // interval since. Runs on the logger thread only.
+    private static final class IntervalLog {
+        private final long[][] previous = new long[Op.values().length][LatencyHistogram.BUCKETS];
+        private final long[] current = new long[LatencyHistogram.BUCKETS];
+        private long previousRead;
+        private long previousWritten;
+        private long previousStall;
+
+        void print() {
+            StringBuilder line = new StringBuilder("Metrics:");
+            for (Op op : Op.values()) {
+                long[] last = previous[op.ordinal()];
+                op.histogram.copyCounts(current);
+                long count = 0;
+                for (int i = 0; i < current.length; i++) {
+                    long now = current[i];
+                    current[i] -= last[i];
+                    last[i] = now;
+                    count += current[i];
+                }
+                if (count > 0) {
+                    line.append(' ').append(op.label).append(" n=").append(count)
+                            .append(" p50=").append(millis(LatencyHistogram.percentile(current, 50)))
+                            .append(" p99=").append(millis(LatencyHistogram.percentile(current, 99)))
+                            .append(" max=").append(millis(LatencyHistogram.percentile(current, 100)));
+                }
+            }
+            long read = bytesRead.sum();
+            long written = bytesWritten.sum();
+            long stall = edtStallNanos.sum();
+            line.append(" read=").append(bytes(read - previousRead))
+                    .append(" written=").append(bytes(written - previousWritten))
+                    .append(" edtStall=").append((stall - previousStall) / 1_000_000).append("ms");
+            previousRead = read;
+            previousWritten = written;
+            previousStall = stall;
+            gauges.forEach((name, value) -> line.append(' ').append(name).append('=').append(value.getAsLong()));
+            System.out.println(line);
+        }
+
+        private static String millis(long nanos) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+
+        private static String bytes(long bytes) {
+            if (bytes < 1024) {
+                return bytes + "B";
+            }
+            if (bytes < 1024 * 1024) {
+                return String.format("%.1fKB", bytes / 1024.0);
+            }
+            return String.format("%.1fMB", bytes / (1024.0 * 1024));
+        }
+    }
+
+    // A modal dialog runs a nested event loop inside the event that opened it;
+    // that outer event is not timed, since it mostly waits for the user.
+    private static final class TimedEventQueue extends EventQueue {
+        private static final int MAX_DEPTH = 16;
+        private final long[] starts = new long[MAX_DEPTH];
+        private final boolean[] nested = new boolean[MAX_DEPTH];
+        private int depth;
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            int d = depth++;
+            if (d > 0 && d <= MAX_DEPTH) {
+                nested[d - 1] = true;
+            }
+            if (d < MAX_DEPTH) {
+                nested[d] = false;
+                starts[d] = System.nanoTime();
+            }
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                depth--;
+                if (d < MAX_DEPTH && !nested[d]) {
+                    long elapsed = System.nanoTime() - starts[d];
+                    Op.EDT_EVENT.histogram.record(elapsed);
+                    if (elapsed >= STALL_NANOS) {
+                        edtStalls.increment();
+                        edtStallNanos.add(elapsed);
+                    }
+                }
+            }
+        }
+    }
+
+    // Read-only long attributes backed by suppliers. Later maps are read when
+    // the bean is, so gauges added after registration still show up.
+    private static final class Attributes implements DynamicMBean {
+        private final List<Map<String, LongSupplier>> sources;
+
+        Attributes(List<Map<String, LongSupplier>> sources) {
+            this.sources = sources;
+        }
+
+        private LongSupplier find(String name) {
+            for (Map<String, LongSupplier> source : sources) {
+                LongSupplier value = source.get(name);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String name) throws AttributeNotFoundException {
+            LongSupplier value = find(name);
+            if (value == null) {
+                throw new AttributeNotFoundException(name);
+            }
+            return value.getAsLong();
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                LongSupplier value = find(name);
+                if (value != null) {
+                    list.add(new Attribute(name, value.getAsLong()));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws MBeanException {
+            throw new MBeanException(new UnsupportedOperationException(action));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, MBeanAttributeInfo> infos = new LinkedHashMap<>();
+            for (Map<String, LongSupplier> source : sources) {
+                for (String name : source.keySet()) {
+                    infos.putIfAbsent(name, new MBeanAttributeInfo(name, "long", name, true, false, false));
+                }
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Dinner app metrics",
+                    infos.values().toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package dinnerapp;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// A user's dinner list as changes over a shared DinnerCatalog. The list is a
+// sequence of runs, each either a range of catalog dinners or one dinner of the
+// user's own: an addition, or an edit of a catalog dinner. A catalog dinner the
+// user removed is a gap between ranges. An untouched catalog is one run, so the
+// memory and the file (see DinnerCodec) grow with the user's changes, not with
+// the catalog, and a catalog dinner is only read when get() asks for it.
+//
+// Finding the run for an index is a binary search; a change shifts the runs
+// after it, which is cheap while a user's changes are few.
+class OverlayDinnerList extends AbstractList<Dinner> implements RandomAccess {
+    private final DinnerCatalog catalog;
+    // Catalog index of each run's first dinner, or -1 for an own dinner.
+    private int[] from;
+    // Dinners in each run; 1 for an own dinner.
+    private int[] count;
+    // List index just past each run.
+    private int[] end;
+    private Dinner[] own;
+    private int runs;
+
+    OverlayDinnerList(DinnerCatalog catalog) {
+        this.catalog = catalog;
+        from = new int[10];
+        count = new int[10];
+        end = new int[10];
+        own = new Dinner[10];
+        if (catalog.size() > 0) {
+            from[0] = 0;
+            count[0] = catalog.size();
+            end[0] = catalog.size();
+            runs = 1;
+        }
+    }
+
+    private OverlayDinnerList(OverlayDinnerList other) {
+        catalog = other.catalog;
+        from = Arrays.copyOf(other.from, Math.max(10, other.runs));
+        count = Arrays.copyOf(other.count, from.length);
+        end = Arrays.copyOf(other.end, from.length);
+        own = Arrays.copyOf(other.own, from.length);
+        runs = other.runs;
+    }
+
+    // Copies the runs, not the dinners, so it is cheap enough to take on the EDT.
+    OverlayDinnerList copy() {
+        return new OverlayDinnerList(this);
+    }
+
+    DinnerCatalog catalog() {
+        return catalog;
+    }
+
+    int runs() {
+        return runs;
+    }
+
+    // The run's own dinner, or null if it is a catalog range.
+    Dinner ownDinner(int run) {
+        return own[run];
+    }
+
+    int catalogStart(int run) {
+        return from[run];
+    }
+
+    int catalogCount(int run) {
+        return count[run];
+    }
+
+    // Appends catalog dinners, as read back from a saved list after clear().
+    void appendRange(int catalogStart, int catalogCount) {
+        insertRun(runs);
+        setRun(runs - 1, catalogStart, catalogCount, null);
+        updateEnds(runs - 1);
+    }
+
+    void appendOwn(Dinner dinner) {
+        insertRun(runs);
+        setRun(runs - 1, -1, 1, dinner);
+        updateEnds(runs - 1);
+    }
+
+    @Override
+    public Dinner get(int index) {
+        Objects.checkIndex(index, size());
+        int run = runAt(index);
+        Dinner dinner = own[run];
+        return dinner != null ? dinner : catalog.get(from[run] + index - (end[run] - count[run]));
+    }
+
+    // Same as get(index).getWeight(), without decoding a catalog dinner.
+    double weight(int index) {
+        Objects.checkIndex(index, size());
+        int run = runAt(index);
+        Dinner dinner = own[run];
+        return dinner != null ? dinner.getWeight() : catalog.weight(from[run] + index - (end[run] - count[run]));
+    }
+
+    @Override
+    public int size() {
+        return runs == 0 ? 0 : end[runs - 1];
+    }
+
+    @Override
+    public Dinner set(int index, Dinner dinner) {
+        Dinner old = get(index);
+        int run = split(index);
+        split(index + 1);
+        setRun(run, -1, 1, dinner);
+        return old;
+    }
+
+    @Override
+    public void add(int index, Dinner dinner) {
+        Objects.checkIndex(index, size() + 1);
+        int run = split(index);
+        insertRun(run);
+        setRun(run, -1, 1, dinner);
+        updateEnds(run);
+        modCount++;
+    }
+
+    @Override
+    public Dinner remove(int index) {
+        Dinner old = get(index);
+        int run = split(index);
+        split(index + 1);
+        System.arraycopy(from, run + 1, from, run, runs - run - 1);
+        System.arraycopy(count, run + 1, count, run, runs - run - 1);
+        System.arraycopy(end, run + 1, end, run, runs - run - 1);
+        System.arraycopy(own, run + 1, own, run, runs - run - 1);
+        runs--;
+        own[runs] = null;
+        // Undoing an insertion into a range leaves the two halves side by side.
+        if (run > 0 && run < runs && own[run - 1] == null && own[run] == null
+                && from[run - 1] + count[run - 1] == from[run]) {
+            count[run - 1] += count[run];
+            System.arraycopy(from, run + 1, from, run, runs - run - 1);
+            System.arraycopy(count, run + 1, count, run, runs - run - 1);
+            System.arraycopy(end, run + 1, end, run, runs - run - 1);
+            System.arraycopy(own, run + 1, own, run, runs - run - 1);
+            runs--;
+            run--;
+        }
+        updateEnds(run);
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(own, 0, runs, null);
+        runs = 0;
+        modCount++;
+    }
+
+    // The run holding index; index must be in the list.
+    private int runAt(int index) {
+        int low = 0;
+        int high = runs - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (end[mid] <= index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Makes index the start of a run, splitting a catalog range if needed, and
+    // returns that run; runs if index is the size.
+    private int split(int index) {
+        if (index == size()) {
+            return runs;
+        }
+        int run = runAt(index);
+        int start = end[run] - count[run];
+        if (start == index) {
+            return run;
+        }
+        int head = index - start;
+        insertRun(run + 1);
+        setRun(run + 1, from[run] + head, count[run] - head, null);
+        end[run + 1] = end[run];
+        count[run] = head;
+        end[run] = index;
+        return run + 1;
+    }
+
+    private void insertRun(int run) {
+        if (runs == from.length) {
+            int capacity = from.length + (from.length >> 1);
+            from = Arrays.copyOf(from, capacity);
+            count = Arrays.copyOf(count, capacity);
+            end = Arrays.copyOf(end, capacity);
+            own = Arrays.copyOf(own, capacity);
+        }
+        System.arraycopy(from, run, from, run + 1, runs - run);
+        System.arraycopy(count, run, count, run + 1, runs - run);
+        System.arraycopy(end, run, end, run + 1, runs - run);
+        System.arraycopy(own, run, own, run + 1, runs - run);
+        runs++;
+    }
+
+    private void setRun(int run, int catalogStart, int catalogCount, Dinner dinner) {
+        from[run] = catalogStart;
+        count[run] = catalogCount;
+        own[run] = dinner;
+    }
+
+    private void updateEnds(int run) {
+        for (int r = Math.max(0, run); r < runs; r++) {
+            end[r] = (r > 0 ? end[r - 1] : 0) + count[r];
+        }
+    }
+}
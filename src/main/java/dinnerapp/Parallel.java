@@ -0,0 +1,42 @@
+package dinnerapp;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Runs a task for each index in [from, to), split in halves across the common
+// fork-join pool down to LEAF indexes per task.
+final class Parallel extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int LEAF = 64;
+
+    interface Task {
+        void run(int index);
+    }
+
+    private final int from;
+    private final int to;
+    private final Task task;
+
+    private Parallel(int from, int to, Task task) {
+        this.from = from;
+        this.to = to;
+        this.task = task;
+    }
+
+    // Returns once task has run for every index.
+    static void forEach(int from, int to, Task task) {
+        ForkJoinPool.commonPool().invoke(new Parallel(from, to, task));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= LEAF) {
+            for (int i = from; i < to; i++) {
+                task.run(i);
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new Parallel(from, mid, task), new Parallel(mid, to, task));
+    }
+}
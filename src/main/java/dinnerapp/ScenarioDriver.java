@@ -0,0 +1,473 @@
+package dinnerapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless load test. Simulated users each log in once, then keep adding,
+// editing, deleting and picking random dinners with a pause to think between
+// actions, and log out when the run ends, all concurrently, making the same DinnerService and
+// DinnerListModel calls DinnerApp's listeners make, with every dialog answered
+// yes. Sessions are spread over several DinnerService instances sharing the
+// working directory, as separate app processes would, and sessions come in pairs
+// per account on different instances, so the same files are written from two
+// places at once.
+//
+// Every change a session saw succeed goes into its ledger. Afterwards each
+// account's files are read back and compared with the ledgers, so a lost add,
+// edit or delete shows up; meanwhile a reader checks that the files being
+// written stay readable. Prints throughput and latency percentiles per action,
+// and exits with status 1 if anything was lost, unreadable or threw.
+//
+// It registers accounts in the working directory, so it refuses to run in one
+// it did not create:
+//   mvn -Pload verify -Dload.args="-Ddinner.load.users=50"    (in target/load)
+//   java -Ddinner.load.seconds=60 -cp target/classes dinnerapp.ScenarioDriver
+final class ScenarioDriver {
+    static final int USERS = Integer.getInteger("dinner.load.users", 20);
+    static final int ACCOUNTS = Integer.getInteger("dinner.load.accounts", Math.max(1, USERS / 2));
+    static final int INSTANCES = Integer.getInteger("dinner.load.instances", 2);
+    static final int SECONDS = Integer.getInteger("dinner.load.seconds", 30);
+    // Sessions log in spread evenly over this long, rather than all at once.
+    static final long RAMP_MILLIS = Long.getLong("dinner.load.rampMillis", 5000);
+    // Mean pause between a session's actions; 0 runs them back to back.
+    static final long THINK_MILLIS = Long.getLong("dinner.load.thinkMillis", 20);
+
+    private static final String PASSWORD = "load-test";
+    private static final File MARKER = new File("scenario-driver.marker");
+    private static final int MAX_ERRORS_PRINTED = 5;
+
+    enum Action {
+        REGISTER, LOGIN, ADD, EDIT, DELETE, RANDOM, RELOAD, LOGOUT;
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        // Changes refused because the list changed since the session loaded it.
+        final LongAdder conflicts = new LongAdder();
+    }
+
+    // One app instance, set up as DinnerApp.loadUsers() does.
+    private static final class Instance {
+        final DinnerService service;
+        final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+        Instance() throws IOException {
+            UserStore users = new UserStore(new File("admin.txt"), new File("admin.idx"));
+            users.open();
+            service = new DinnerService(users);
+            // Another instance saved this user's dinners; DinnerApp reloads them.
+            service.addChangeListener(user -> {
+                for (Session session : sessions) {
+                    if (session.account.equals(user)) {
+                        session.stale = true;
+                    }
+                }
+            });
+        }
+    }
+
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+    private final List<Instance> instances = new ArrayList<>();
+    private final List<Session> sessions = new ArrayList<>();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder unreadable = new LongAdder();
+    private volatile boolean running = true;
+
+    // One simulated user: the state DinnerApp keeps for its window.
+    private final class Session implements Runnable {
+        final String account;
+        final Instance instance;
+        final String prefix;
+        final SplittableRandom random;
+        final long delayMillis;
+        final DinnerListModel model = new DinnerListModel();
+        // Own dinners by name, to the description last saved, or null once deleted.
+        final Map<String, String> ledger = new HashMap<>();
+        // Own dinners not deleted, for picking one to edit or delete.
+        final List<String> live = new ArrayList<>();
+        volatile boolean stale;
+        List<Dinner> dinners;
+        int added;
+        int version;
+
+        Session(int number, String account, Instance instance) {
+            this.account = account;
+            this.instance = instance;
+            prefix = run + "-s" + number + "-";
+            random = new SplittableRandom(number);
+            delayMillis = RAMP_MILLIS * number / USERS;
+        }
+
+        @Override
+        public void run() {
+            sleep(delayMillis);
+            if (!running) {
+                return;
+            }
+            try {
+                login();
+            } catch (IOException | RuntimeException e) {
+                error(account, e);
+                return;
+            }
+            while (running) {
+                think();
+                if (!running) {
+                    break;
+                }
+                try {
+                    if (stale) {
+                        reload();
+                    }
+                    int roll = random.nextInt(100);
+                    if (roll < 30) {
+                        add();
+                    } else if (roll < 55) {
+                        edit();
+                    } else if (roll < 70) {
+                        delete();
+                    } else {
+                        pick();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    error(account, e);
+                }
+            }
+            logout();
+        }
+
+        private void login() throws IOException {
+            long start = System.nanoTime();
+            if (!instance.service.authenticate(account, PASSWORD)) {
+                throw new IOException("Cannot log in as " + account);
+            }
+            load();
+            Action.LOGIN.histogram.record(System.nanoTime() - start);
+        }
+
+        // As DinnerApp.loadDinners() and refreshDinnerList(), warming the
+        // duplicate index here rather than in the background.
+        private void load() throws IOException {
+            stale = false;
+            dinners = instance.service.list(account);
+            model.setDinners(dinners);
+            model.prepareDuplicates().warm();
+        }
+
+        private void reload() throws IOException {
+            long start = System.nanoTime();
+            load();
+            Action.RELOAD.histogram.record(System.nanoTime() - start);
+        }
+
+        private void logout() {
+            long start = System.nanoTime();
+            dinners = new OverlayDinnerList(DinnerCatalog.current());
+            model.setDinners(dinners);
+            Action.LOGOUT.histogram.record(System.nanoTime() - start);
+        }
+
+        private void add() throws IOException {
+            String name = prefix + ++added;
+            Dinner dinner = new Dinner(name, "v0");
+            long start = System.nanoTime();
+            model.prepareDuplicates().duplicatesOf(dinner, -1);
+            if (perform(Action.ADD, List.of(DinnerEdit.insert(dinners.size(), dinner)), start)) {
+                ledger.put(name, "v0");
+                live.add(name);
+            }
+        }
+
+        private void edit() throws IOException {
+            String name = ownDinner();
+            if (name == null) {
+                add();
+                return;
+            }
+            long start = System.nanoTime();
+            int index = find(name);
+            if (index < 0) {
+                return;
+            }
+            Dinner dinner = dinners.get(index);
+            String description = "v" + ++version;
+            Dinner edited = dinner.edited(dinner.getName(), description);
+            model.prepareDuplicates().duplicatesOf(edited, index);
+            if (perform(Action.EDIT, List.of(DinnerEdit.set(index, dinner, edited)), start)) {
+                ledger.put(name, description);
+            }
+        }
+
+        private void delete() throws IOException {
+            String name = ownDinner();
+            if (name == null) {
+                add();
+                return;
+            }
+            long start = System.nanoTime();
+            int index = find(name);
+            if (index < 0) {
+                return;
+            }
+            if (perform(Action.DELETE, List.of(DinnerEdit.remove(index, dinners.get(index))), start)) {
+                ledger.put(name, null);
+                live.remove(name);
+            }
+        }
+
+        // As DinnerApp.pickForUser(). The change listener only hears about other
+        // instances, so a session sharing this instance and account may have
+        // changed the list since; then the pick will not fit our copy.
+        private void pick() throws IOException {
+            long start = System.nanoTime();
+            DinnerEdit edit = instance.service.pick(account, DinnerApp.RECENT_PICKS_TO_AVOID);
+            if (edit != null) {
+                try {
+                    model.apply(List.of(edit));
+                } catch (IndexOutOfBoundsException e) {
+                    Action.RANDOM.conflicts.increment();
+                    reload();
+                }
+            }
+            Action.RANDOM.histogram.record(System.nanoTime() - start);
+        }
+
+        // As DinnerApp.applyEdits(), which reloads the list after a conflict.
+        // Returns whether the change was saved.
+        private boolean perform(Action action, List<DinnerEdit> edits, long start) throws IOException {
+            List<DinnerEdit> applied;
+            try {
+                applied = instance.service.apply(account, edits);
+            } catch (IllegalStateException e) {
+                action.histogram.record(System.nanoTime() - start);
+                action.conflicts.increment();
+                reload();
+                return false;
+            }
+            model.apply(applied);
+            action.histogram.record(System.nanoTime() - start);
+            return true;
+        }
+
+        private String ownDinner() {
+            return live.isEmpty() ? null : live.get(random.nextInt(live.size()));
+        }
+
+        // Where the user sees their dinner, reloading once if it is not there.
+        // One still missing after that is given up on; the check at the end
+        // reports it.
+        private int find(String name) throws IOException {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                for (int i = 0; i < dinners.size(); i++) {
+                    if (dinners.get(i).getName().equals(name)) {
+                        return i;
+                    }
+                }
+                if (attempt == 0) {
+                    reload();
+                }
+            }
+            live.remove(name);
+            return -1;
+        }
+
+        private void think() {
+            if (THINK_MILLIS > 0) {
+                sleep(random.nextLong(2 * THINK_MILLIS));
+            }
+        }
+
+        private void sleep(long millis) {
+            if (millis > 0) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File admin = new File("admin.txt");
+        if (admin.exists() && !MARKER.exists()) {
+            System.err.println("Refusing to add load-test accounts to " + admin.getAbsolutePath()
+                    + "; run in an empty directory.");
+            System.exit(2);
+        }
+        MARKER.createNewFile();
+        System.exit(new ScenarioDriver().drive() ? 0 : 1);
+    }
+
+    // Returns true if nothing was lost, unreadable or threw.
+    private boolean drive() throws Exception {
+        for (int i = 0; i < INSTANCES; i++) {
+            instances.add(new Instance());
+        }
+        for (int i = 0; i < ACCOUNTS; i++) {
+            long start = System.nanoTime();
+            instances.get(0).service.register(account(i), PASSWORD);
+            Action.REGISTER.histogram.record(System.nanoTime() - start);
+        }
+        for (int i = 0; i < USERS; i++) {
+            // Sessions sharing an account go to different instances.
+            Instance instance = instances.get(i / ACCOUNTS % INSTANCES);
+            Session session = new Session(i, account(i % ACCOUNTS), instance);
+            instance.sessions.add(session);
+            sessions.add(session);
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (Session session : sessions) {
+            threads.add(new Thread(session, "session-" + threads.size()));
+        }
+        Thread reader = new Thread(this::readFiles, "file-reader");
+        long start = System.nanoTime();
+        reader.start();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(SECONDS * 1000L);
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        reader.join();
+        for (Instance instance : instances) {
+            instance.service.close();
+        }
+        DinnerStore.awaitWrites();
+        printLatencies(elapsed);
+        return check();
+    }
+
+    private static String account(int i) {
+        return "load-" + i;
+    }
+
+    // Reads random accounts' files, as another instance loading them would,
+    // while the sessions write them.
+    private void readFiles() {
+        SplittableRandom random = new SplittableRandom();
+        while (running) {
+            String account = account(random.nextInt(ACCOUNTS));
+            try {
+                List<Dinner> dinners = DinnerStore.peek(account);
+                for (Dinner dinner : dinners) {
+                    dinner.getName();
+                }
+            } catch (IOException | RuntimeException e) {
+                unreadable.increment();
+                error(account, e);
+            }
+        }
+    }
+
+    private void error(String account, Exception e) {
+        errors.increment();
+        if (errors.sum() <= MAX_ERRORS_PRINTED) {
+            System.err.println(account + ": " + e);
+            e.printStackTrace();
+        }
+    }
+
+    private void printLatencies(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%d users on %d instances over %d accounts for %.1fs%n", USERS, INSTANCES, ACCOUNTS, seconds);
+        System.out.printf("%-9s %9s %9s %9s %9s %9s %9s %9s%n", "action", "count", "conflicts", "ops/s", "p50", "p99", "p999", "max");
+        for (Action action : Action.values()) {
+            LatencyHistogram histogram = action.histogram;
+            long count = histogram.count();
+            if (count == 0) {
+                continue;
+            }
+            double rate = action == Action.REGISTER ? Double.NaN : count / seconds;
+            System.out.printf("%-9s %9d %9d %9.1f %9s %9s %9s %9s%n", action.name().toLowerCase(), count,
+                    action.conflicts.sum(), rate, millis(histogram.percentile(50)), millis(histogram.percentile(99)),
+                    millis(histogram.percentile(99.9)), millis(histogram.maxNanos()));
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2fms", nanos / 1e6);
+    }
+
+    // Reads every account back and compares it with what the sessions saw saved.
+    private boolean check() throws IOException {
+        int lostAdds = 0;
+        int lostEdits = 0;
+        int lostDeletes = 0;
+        int duplicated = 0;
+        int unexpected = 0;
+        int unreadableAtEnd = 0;
+        int locked = 0;
+        UserStore users = new UserStore(new File("admin.txt"), new File("admin.idx"));
+        users.open();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String account = account(i);
+            if (!users.authenticate(account, PASSWORD)) {
+                locked++;
+                System.err.println(account + ": cannot log in after the run");
+            }
+            List<Dinner> stored;
+            try {
+                stored = DinnerStore.peek(account);
+            } catch (IOException | RuntimeException e) {
+                unreadableAtEnd++;
+                System.err.println(account + ": " + e);
+                continue;
+            }
+            Map<String, String> expected = new HashMap<>();
+            for (Session session : sessions) {
+                if (session.account.equals(account)) {
+                    expected.putAll(session.ledger);
+                }
+            }
+            Map<String, Integer> copies = new HashMap<>();
+            Map<String, String> descriptions = new HashMap<>();
+            for (Dinner dinner : stored) {
+                if (dinner.getName().startsWith(run + "-")) {
+                    copies.merge(dinner.getName(), 1, Integer::sum);
+                    descriptions.put(dinner.getName(), dinner.getDescription());
+                }
+            }
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                String name = entry.getKey();
+                String description = entry.getValue();
+                String actual = descriptions.get(name);
+                if (description == null && actual != null) {
+                    lostDeletes++;
+                    System.err.println(account + ": " + name + " was deleted but is still there");
+                } else if (description != null && actual == null) {
+                    lostAdds++;
+                    System.err.println(account + ": " + name + " is missing");
+                } else if (description != null && !description.equals(actual)) {
+                    lostEdits++;
+                    System.err.println(account + ": " + name + " has " + actual + " instead of " + description);
+                }
+            }
+            for (Map.Entry<String, Integer> entry : copies.entrySet()) {
+                if (entry.getValue() > 1) {
+                    duplicated++;
+                    System.err.println(account + ": " + entry.getKey() + " is there " + entry.getValue() + " times");
+                }
+                if (!expected.containsKey(entry.getKey())) {
+                    unexpected++;
+                    System.err.println(account + ": " + entry.getKey() + " was never saved");
+                }
+            }
+        }
+        System.out.printf("Checked %d accounts: %d lost adds, %d lost edits, %d lost deletes, %d duplicated, %d unexpected,"
+                + " %d unreadable at the end, %d unreadable reads during the run, %d cannot log in, %d errors%n",
+                ACCOUNTS, lostAdds, lostEdits, lostDeletes, duplicated, unexpected, unreadableAtEnd,
+                unreadable.sum(), locked, errors.sum());
+        return lostAdds + lostEdits + lostDeletes + duplicated + unexpected + unreadableAtEnd + locked == 0
+                && errors.sum() == 0;
+    }
+}
@@ -0,0 +1,71 @@
+package dinnerapp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Times the serial phases of application startup. Each phase is recorded as a
+// JFR event (visible with -XX:StartFlightRecording) and finish() prints one
+// summary line, e.g.
+//
+//   Startup: jvm=180ms loadUsers=2ms initUI=95ms setVisible=40ms total=330ms
+//
+// Startup runs on the EDT, so there is no locking.
+class StartupTimer {
+    @Name("dinner.StartupPhase")
+    @Label("Startup Phase")
+    @Category("Dinner")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+
+    private static final StringBuilder summary = new StringBuilder("Startup:");
+    private static PhaseEvent current;
+    private static long currentStart;
+    private static boolean finished;
+
+    static {
+        // Time from JVM launch to the first use of this class, usually main().
+        ProcessHandle.current().info().startInstant().ifPresent(start ->
+                summary.append(" jvm=").append(Duration.between(start, Instant.now()).toMillis()).append("ms"));
+    }
+
+    // Ends the running phase, if any, and starts the named one.
+    static void phase(String name) {
+        if (finished) {
+            return;
+        }
+        endCurrent();
+        current = new PhaseEvent();
+        current.phase = name;
+        current.begin();
+        currentStart = System.nanoTime();
+    }
+
+    static void finish() {
+        if (finished) {
+            return;
+        }
+        endCurrent();
+        finished = true;
+        ProcessHandle.current().info().startInstant().ifPresent(start ->
+                summary.append(" total=").append(Duration.between(start, Instant.now()).toMillis()).append("ms"));
+        System.out.println(summary);
+    }
+
+    private static void endCurrent() {
+        if (current == null) {
+            return;
+        }
+        current.end();
+        current.commit();
+        summary.append(' ').append(current.phase).append('=')
+                .append((System.nanoTime() - currentStart) / 1_000_000).append("ms");
+        current = null;
+    }
+}
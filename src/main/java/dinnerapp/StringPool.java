@@ -0,0 +1,120 @@
+package dinnerapp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Deduplicated, append-only string dictionary. Each distinct string is stored
+// once as UTF-8 in a shared byte arena and named by an int id, so a repeated
+// description costs nothing beyond its id and a unique one costs its bytes plus a
+// few ints, instead of a String and its array.
+//
+// Entries never change once written and the arrays are only ever replaced, not
+// rewritten, so a view() taken under the owner's lock can be read from another
+// thread while the owner keeps appending.
+final class StringPool {
+    private byte[] bytes;
+    private int byteCount;
+    private int[] offsets;
+    private int count;
+    // Open-addressing table of id + 1, or 0 for empty; rebuilt lazily in views.
+    private int[] table;
+
+    StringPool() {
+        bytes = new byte[1024];
+        offsets = new int[65];
+        table = new int[128];
+    }
+
+    private StringPool(StringPool other) {
+        bytes = other.bytes;
+        byteCount = other.byteCount;
+        offsets = other.offsets;
+        count = other.count;
+    }
+
+    // A read-only snapshot sharing this pool's arrays. It copies them the first
+    // time it interns a string of its own.
+    StringPool view() {
+        return new StringPool(this);
+    }
+
+    int size() {
+        return count;
+    }
+
+    long byteSize() {
+        return byteCount;
+    }
+
+    String get(int id) {
+        return new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    boolean equals(int id, byte[] utf8) {
+        int start = offsets[id];
+        return Arrays.equals(bytes, start, offsets[id + 1], utf8, 0, utf8.length);
+    }
+
+    int intern(String s) {
+        if (table == null) {
+            ownArrays();
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        int mask = table.length - 1;
+        for (int slot = hash(utf8, 0, utf8.length) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                int id = append(utf8);
+                table[slot] = id + 1;
+                if (count * 2 > table.length) {
+                    rehash(table.length * 2);
+                }
+                return id;
+            }
+            if (equals(entry - 1, utf8)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int append(byte[] utf8) {
+        if (byteCount + utf8.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(byteCount + utf8.length, bytes.length + (bytes.length >> 1)));
+        }
+        System.arraycopy(utf8, 0, bytes, byteCount, utf8.length);
+        byteCount += utf8.length;
+        if (count + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length + (offsets.length >> 1));
+        }
+        offsets[count + 1] = byteCount;
+        return count++;
+    }
+
+    // A view appends into its own copies, so it never writes where the pool it
+    // came from (or another view) may be writing.
+    private void ownArrays() {
+        bytes = Arrays.copyOf(bytes, Math.max(1024, byteCount + (byteCount >> 1)));
+        offsets = Arrays.copyOf(offsets, Math.max(65, count + 1 + (count >> 1)));
+        rehash(Math.max(128, Integer.highestOneBit(Math.max(1, count)) << 2));
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = hash(bytes, offsets[id], offsets[id + 1]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private static int hash(byte[] b, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + b[i];
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,256 @@
+package dinnerapp;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Undo and redo stacks of changes to one dinner list, each change a label plus
+// the DinnerEdits that made it. Recording a new change clears the redo stack.
+//
+// Each stack keeps its newest changes in memory up to MAX_MEMORY_EDITS edits;
+// older ones spill to a temporary file and are read back as undo reaches them.
+// Past MAX_SPILL_BYTES on disk the oldest changes are forgotten. Used on the EDT
+// only.
+class UndoHistory implements Closeable {
+    static final int MAX_MEMORY_EDITS = Integer.getInteger("dinner.undo.memoryEdits", 10_000);
+    static final long MAX_SPILL_BYTES = Long.getLong("dinner.undo.spillBytes", 64L * 1024 * 1024);
+
+    static final class Change {
+        final String label;
+        final List<DinnerEdit> edits;
+
+        Change(String label, List<DinnerEdit> edits) {
+            this.label = label;
+            this.edits = edits;
+        }
+    }
+
+    private final ChangeStack undo = new ChangeStack();
+    private final ChangeStack redo = new ChangeStack();
+    // Counts clear() calls, so a change being applied is only put back on a stack
+    // if the history was not cleared meanwhile.
+    private long clears;
+
+    void record(String label, List<DinnerEdit> edits) {
+        undo.push(new Change(label, edits));
+        redo.clear();
+    }
+
+    // The label of the change undo() would revert, or null if there is none.
+    String undoLabel() {
+        return undo.peekLabel();
+    }
+
+    String redoLabel() {
+        return redo.peekLabel();
+    }
+
+    // Applies edits, now or later, then calls done with whether it did.
+    interface Applier {
+        void apply(List<DinnerEdit> edits, Consumer<Boolean> done);
+    }
+
+    // Reverts the newest change by passing the edits that undo it to revert. Once
+    // they are applied the change moves to the redo stack; one that failed to
+    // revert goes back to be undone, unless the history was cleared meanwhile.
+    // Returns false if there was nothing to undo.
+    boolean undo(Applier revert) {
+        return move(undo, redo, revert, true);
+    }
+
+    // Redoes the newest undone change the same way.
+    boolean redo(Applier apply) {
+        return move(redo, undo, apply, false);
+    }
+
+    private boolean move(ChangeStack from, ChangeStack to, Applier apply, boolean inverse) {
+        Change change = from.pop();
+        if (change == null) {
+            return false;
+        }
+        long cleared = clears;
+        apply.apply(inverse ? DinnerEdit.inverse(change.edits) : change.edits, applied -> {
+            if (clears != cleared) {
+                return;
+            }
+            (applied ? to : from).push(change);
+        });
+        return true;
+    }
+
+    // Forgets everything, e.g. when the list was replaced and the recorded
+    // indexes no longer apply.
+    void clear() {
+        undo.clear();
+        redo.clear();
+        clears++;
+    }
+
+    @Override
+    public void close() {
+        undo.close();
+        redo.close();
+    }
+
+    // Memory holds the newest changes; the file holds older ones as a stack of
+    // [length][change][length] frames between floor and end, so both the newest
+    // (to pop) and the oldest (to forget) can be found.
+    private static final class ChangeStack {
+        private final ArrayDeque<Change> memory = new ArrayDeque<>();
+        private int memoryEdits;
+        private RandomAccessFile file;
+        private File path;
+        private long floor;
+        private long end;
+
+        void push(Change change) {
+            memory.addLast(change);
+            memoryEdits += change.edits.size();
+            while (memoryEdits > MAX_MEMORY_EDITS && memory.size() > 1) {
+                Change oldest = memory.removeFirst();
+                memoryEdits -= oldest.edits.size();
+                spill(oldest);
+            }
+        }
+
+        Change pop() {
+            if (!memory.isEmpty()) {
+                Change change = memory.removeLast();
+                memoryEdits -= change.edits.size();
+                return change;
+            }
+            if (end == floor) {
+                return null;
+            }
+            try {
+                file.seek(end - Integer.BYTES);
+                int length = file.readInt();
+                byte[] frame = new byte[length];
+                file.seek(end - Integer.BYTES - length);
+                file.readFully(frame);
+                end -= length + 2 * Integer.BYTES;
+                if (end == floor) {
+                    floor = end = 0;
+                }
+                file.setLength(end);
+                return decode(frame);
+            } catch (IOException e) {
+                e.printStackTrace();
+                clearFile();
+                return null;
+            }
+        }
+
+        String peekLabel() {
+            if (!memory.isEmpty()) {
+                return memory.getLast().label;
+            }
+            Change change = pop();
+            if (change != null) {
+                push(change);
+                return change.label;
+            }
+            return null;
+        }
+
+        void clear() {
+            memory.clear();
+            memoryEdits = 0;
+            clearFile();
+        }
+
+        void close() {
+            clear();
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                path.delete();
+                file = null;
+            }
+        }
+
+        private void spill(Change change) {
+            try {
+                if (file == null) {
+                    path = File.createTempFile("dinner-undo", ".tmp");
+                    path.deleteOnExit();
+                    file = new RandomAccessFile(path, "rw");
+                }
+                byte[] frame = encode(change);
+                file.seek(end);
+                file.writeInt(frame.length);
+                file.write(frame);
+                file.writeInt(frame.length);
+                end += frame.length + 2 * Integer.BYTES;
+                while (end - floor > MAX_SPILL_BYTES) {
+                    file.seek(floor);
+                    floor += file.readInt() + 2 * Integer.BYTES;
+                }
+                // Forgotten frames at the front are reclaimed once they are
+                // most of the file.
+                if (floor > end - floor) {
+                    compact();
+                }
+            } catch (IOException e) {
+                // Undo is best effort; losing the oldest changes beats failing the edit.
+                e.printStackTrace();
+                clearFile();
+            }
+        }
+
+        private void compact() throws IOException {
+            byte[] buffer = new byte[64 * 1024];
+            long live = end - floor;
+            for (long done = 0; done < live; ) {
+                int n = (int) Math.min(buffer.length, live - done);
+                file.seek(floor + done);
+                file.readFully(buffer, 0, n);
+                file.seek(done);
+                file.write(buffer, 0, n);
+                done += n;
+            }
+            floor = 0;
+            end = live;
+            file.setLength(end);
+        }
+
+        private void clearFile() {
+            floor = end = 0;
+            if (file != null) {
+                try {
+                    file.setLength(0);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private static byte[] encode(Change change) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(change.label);
+            out.writeInt(change.edits.size());
+            for (DinnerEdit edit : change.edits) {
+                edit.write(out);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private static Change decode(byte[] frame) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+            String label = in.readUTF();
+            int count = in.readInt();
+            List<DinnerEdit> edits = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                edits.add(DinnerEdit.read(in));
+            }
+            return new Change(label, edits);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package dinnerapp;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.regex.Pattern;
+
+// Credential store. admin.txt is an append-only log of "user:credential" lines,
+// where a later line for the same user replaces an earlier one. admin.idx is an
+// open-addressing hash table on disk that maps a username to the offset of its
+// latest line, so startup only checks the index header and a lookup reads one
+// line. Credentials are PBKDF2 hashes; plain-text passwords from older versions
+// are re-hashed on their first successful login.
+//
+// Other app instances may append to the same files. Every operation holds
+// admin.txt.lock and first catches up on lines appended since the index header
+// was written, which costs one header read when nothing changed. Appends are
+// fsynced before the index points at them. Threads share the index under this
+// object's monitor; password hashing runs outside it and the lock file, so logins
+// and registrations run in parallel.
+class UserStore {
+    static final int ITERATIONS = Integer.getInteger("dinner.kdf.iterations", 120_000);
+
+    private static final int INDEX_MAGIC = 0x55494458;
+    private static final int INDEX_HEADER = Integer.BYTES * 3 + Long.BYTES;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final String HASH_PREFIX = "pbkdf2$";
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Pattern USERNAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    private final File logFile;
+    private final File indexFile;
+    private final File lockFile;
+    private final int iterations;
+    private int capacity;
+    private int count;
+
+    UserStore(File logFile, File indexFile) {
+        this(logFile, indexFile, ITERATIONS);
+    }
+
+    UserStore(File logFile, File indexFile, int iterations) {
+        this.logFile = logFile;
+        this.indexFile = indexFile;
+        this.lockFile = new File(logFile.getPath() + ".lock");
+        this.iterations = iterations;
+    }
+
+    void open() throws IOException {
+        locked(() -> null);
+    }
+
+    // Reads the index header and indexes any lines appended since it was written.
+    private void refresh() throws IOException {
+        long logLength = logFile.length();
+        long indexedLength = -1;
+        if (indexFile.exists()) {
+            try (RandomAccessFile index = new RandomAccessFile(indexFile, "r")) {
+                if (index.length() >= INDEX_HEADER && index.readInt() == INDEX_MAGIC) {
+                    capacity = index.readInt();
+                    count = index.readInt();
+                    indexedLength = index.readLong();
+                }
+            }
+        }
+        if (indexedLength < 0 || indexedLength > logLength) {
+            createIndex(INITIAL_CAPACITY);
+            indexedLength = 0;
+        }
+        if (indexedLength < logLength) {
+            indexLines(indexedLength);
+        }
+    }
+
+    boolean exists(String username) throws IOException {
+        return locked(() -> find(username) != null);
+    }
+
+    // The slow hash runs outside the lock, so other logins are not held up.
+    boolean authenticate(String username, String password) throws IOException {
+        String credential = locked(() -> find(username));
+        if (credential == null) {
+            return false;
+        }
+        if (!credential.startsWith(HASH_PREFIX)) {
+            boolean matches = MessageDigest.isEqual(credential.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+            if (matches) {
+                rehash(username, credential, password);
+            }
+            return matches;
+        }
+        String[] parts = credential.split("\\$");
+        int storedIterations;
+        byte[] salt;
+        byte[] expected;
+        try {
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Expected 4 fields, found " + parts.length);
+            }
+            storedIterations = Integer.parseInt(parts[1]);
+            salt = Base64.getDecoder().decode(parts[2]);
+            expected = Base64.getDecoder().decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            // A truncated or garbled record, which no password matches.
+            return false;
+        }
+        if (storedIterations <= 0 || salt.length == 0) {
+            return false;
+        }
+        boolean matches = MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations));
+        if (matches && storedIterations < iterations) {
+            rehash(username, credential, password);
+        }
+        return matches;
+    }
+
+    // Returns false if the username is already taken.
+    boolean register(String username, String password) throws IOException {
+        if (!isValidUsername(username)) {
+            throw new IllegalArgumentException("Invalid username: " + username);
+        }
+        String credential = hash(password, iterations);
+        return locked(() -> {
+            if (find(username) != null) {
+                return false;
+            }
+            append(username, credential);
+            return true;
+        });
+    }
+
+    // Usernames name the user's files (see DinnerStore), so they are limited to
+    // characters that cannot reach outside the directory or hide the files.
+    static boolean isValidUsername(String username) {
+        return USERNAME.matcher(username).matches() && !username.startsWith(".") && !username.contains("..");
+    }
+
+    // Picks the iteration count whose hash takes about targetMillis on this machine.
+    static int calibrate(long targetMillis) {
+        int sample = 20_000;
+        byte[] salt = new byte[16];
+        pbkdf2("calibrate", salt, sample);
+        long start = System.nanoTime();
+        pbkdf2("calibrate", salt, sample);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        return (int) Math.max(10_000, sample * (targetMillis * 1_000_000L) / elapsed);
+    }
+
+    // Prints how long one hash takes at a few iteration counts.
+    public static void main(String[] args) {
+        byte[] salt = new byte[16];
+        for (int i = 0; i < 5; i++) {
+            pbkdf2("warmup", salt, 20_000);
+        }
+        for (int n : new int[] {10_000, 60_000, ITERATIONS, 240_000}) {
+            long start = System.nanoTime();
+            pbkdf2("benchmark", salt, n);
+            System.out.printf("%,d iterations: %.1f ms%n", n, (System.nanoTime() - start) / 1e6);
+        }
+        System.out.println("Suggested for 100 ms: " + calibrate(100));
+    }
+
+    private static String hash(String password, int iterations) {
+        byte[] salt = new byte[16];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return HASH_PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 256);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // Runs action under the lock file, after catching up with other instances.
+    private synchronized <T> T locked(AtomicFiles.Action<T> action) throws IOException {
+        return AtomicFiles.locked(lockFile, () -> {
+            refresh();
+            return action.run();
+        });
+    }
+
+    // Replaces a credential unless another instance changed it meanwhile.
+    private void rehash(String username, String oldCredential, String password) throws IOException {
+        String credential = hash(password, iterations);
+        locked(() -> {
+            if (oldCredential.equals(find(username))) {
+                append(username, credential);
+            }
+            return null;
+        });
+    }
+
+    private void append(String username, String credential) throws IOException {
+        long offset = logFile.length();
+        String record = username + ":" + credential + System.lineSeparator();
+        if (offset > 0 && !endsWithNewline()) {
+            record = System.lineSeparator() + record;
+            offset += System.lineSeparator().length();
+        }
+        try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+            out.write(record.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        put(username, offset);
+        writeIndexedLength(logFile.length());
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (RandomAccessFile log = new RandomAccessFile(logFile, "r")) {
+            log.seek(log.length() - 1);
+            return log.read() == '\n';
+        }
+    }
+
+    private String find(String username) throws IOException {
+        if (count == 0) {
+            return null;
+        }
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "r");
+             RandomAccessFile log = new RandomAccessFile(logFile, "r")) {
+            for (int slot = slotOf(username), probes = 0; probes < capacity; slot = (slot + 1) & (capacity - 1), probes++) {
+                index.seek(INDEX_HEADER + (long) slot * Long.BYTES);
+                long entry = index.readLong();
+                if (entry == 0) {
+                    return null;
+                }
+                Line line = readLine(log, entry - 1);
+                if (line != null && line.username.equals(username)) {
+                    return line.credential;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void put(String username, long offset) throws IOException {
+        if ((count + 1) * 2 > capacity) {
+            grow();
+        }
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "rw");
+             RandomAccessFile log = new RandomAccessFile(logFile, "r")) {
+            for (int slot = slotOf(username); ; slot = (slot + 1) & (capacity - 1)) {
+                long position = INDEX_HEADER + (long) slot * Long.BYTES;
+                index.seek(position);
+                long entry = index.readLong();
+                if (entry == 0) {
+                    count++;
+                    index.seek(position);
+                    index.writeLong(offset + 1);
+                    index.seek(Integer.BYTES * 2);
+                    index.writeInt(count);
+                    return;
+                }
+                Line line = readLine(log, entry - 1);
+                if (line != null && line.username.equals(username)) {
+                    index.seek(position);
+                    index.writeLong(offset + 1);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void grow() throws IOException {
+        long[] entries = new long[capacity];
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "r")) {
+            index.seek(INDEX_HEADER);
+            for (int i = 0; i < capacity; i++) {
+                entries[i] = index.readLong();
+            }
+        }
+        long indexedLength = readIndexedLength();
+        createIndex(Math.max(INITIAL_CAPACITY, capacity * 2));
+        try (RandomAccessFile log = new RandomAccessFile(logFile, "r")) {
+            for (long entry : entries) {
+                if (entry != 0) {
+                    Line line = readLine(log, entry - 1);
+                    if (line != null) {
+                        put(line.username, entry - 1);
+                    }
+                }
+            }
+        }
+        // Only now, so a crash part way through leaves an index that is rebuilt.
+        writeIndexedLength(indexedLength);
+    }
+
+    private void createIndex(int newCapacity) throws IOException {
+        capacity = newCapacity;
+        count = 0;
+        AtomicFiles.write(indexFile, out -> {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(newCapacity);
+            out.writeInt(0);
+            out.writeLong(0);
+            out.write(new byte[newCapacity * Long.BYTES]);
+        });
+    }
+
+    private void indexLines(long from) throws IOException {
+        try (RandomAccessFile log = new RandomAccessFile(logFile, "r")) {
+            long offset = from;
+            Line line;
+            while ((line = readLine(log, offset)) != null) {
+                if (!line.username.isEmpty()) {
+                    put(line.username, offset);
+                }
+                offset = line.next;
+            }
+            writeIndexedLength(offset);
+        }
+    }
+
+    private long readIndexedLength() throws IOException {
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "r")) {
+            index.seek(Integer.BYTES * 3);
+            return index.readLong();
+        }
+    }
+
+    private void writeIndexedLength(long length) throws IOException {
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "rw")) {
+            index.seek(Integer.BYTES * 3);
+            index.writeLong(length);
+        }
+    }
+
+    private static class Line {
+        final String username;
+        final String credential;
+        final long next;
+
+        Line(String username, String credential, long next) {
+            this.username = username;
+            this.credential = credential;
+            this.next = next;
+        }
+    }
+
+    // Returns the line at offset, or null at end of file. Lines without a ':'
+    // come back with an empty username so callers skip them.
+    private static Line readLine(RandomAccessFile log, long offset) throws IOException {
+        log.seek(offset);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        byte[] buffer = new byte[128];
+        long next = offset;
+        int read;
+        search:
+        while ((read = log.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    bytes.write(buffer, 0, i);
+                    next += i + 1;
+                    break search;
+                }
+            }
+            bytes.write(buffer, 0, read);
+            next += read;
+        }
+        if (next == offset) {
+            return null;
+        }
+        String line = bytes.toString(StandardCharsets.UTF_8).trim();
+        int colon = line.indexOf(':');
+        if (colon < 0) {
+            return new Line("", "", next);
+        }
+        return new Line(line.substring(0, colon), line.substring(colon + 1), next);
+    }
+
+    private int slotOf(String username) {
+        int h = username.hashCode();
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+}
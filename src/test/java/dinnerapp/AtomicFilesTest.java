@@ -0,0 +1,86 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomicFilesTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void writeReplacesTheFile() throws IOException {
+        File file = new File(dir, "data");
+        AtomicFiles.write(file, out -> out.writeInt(1));
+        AtomicFiles.write(file, out -> out.writeInt(2));
+        assertEquals(2, readInt(file));
+        assertArrayEquals(new String[] {"data"}, dir.list());
+    }
+
+    @Test
+    void failedWriteLeavesTheOldFile() throws IOException {
+        File file = new File(dir, "data");
+        AtomicFiles.write(file, out -> out.writeInt(1));
+        assertThrows(IOException.class, () -> AtomicFiles.write(file, out -> {
+            out.writeInt(2);
+            throw new IOException("disk full");
+        }));
+        assertEquals(1, readInt(file));
+        assertArrayEquals(new String[] {"data"}, dir.list());
+    }
+
+    @Test
+    void lockIsReentrant() throws IOException {
+        File lock = new File(dir, "data.lock");
+        int result = AtomicFiles.locked(lock, () -> AtomicFiles.locked(lock, () -> 7));
+        assertEquals(7, result);
+    }
+
+    // Threads each read the file and write it back incremented, under the lock;
+    // none of the increments may be lost.
+    @Test
+    void lockSerializesReadModifyWrite() throws Exception {
+        File file = new File(dir, "counter");
+        File lock = new File(dir, "counter.lock");
+        AtomicFiles.write(file, out -> out.writeInt(0));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        AtomicFiles.locked(lock, () -> {
+                            int value = readInt(file);
+                            AtomicFiles.write(file, out -> out.writeInt(value + 1));
+                            return null;
+                        });
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(200, readInt(file));
+    }
+
+    private static int readInt(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarDinnerListTest {
+    @Test
+    void keepsEveryField() {
+        ColumnarDinnerList list = new ColumnarDinnerList();
+        list.add(new Dinner("Taco", "Tuesday", 1, 0, 0));
+        list.add(new Dinner("Sushi", "", 2.5, 1234, 3));
+        assertDinners(List.of(new Dinner("Taco", "Tuesday", 1, 0, 0), new Dinner("Sushi", "", 2.5, 1234, 3)), list);
+        assertEquals(1, list.weight(0));
+        assertEquals(2.5, list.weight(1));
+    }
+
+    // Random adds, inserts, sets and removes, compared with an ArrayList receiving
+    // the same changes. Enough removals to make the list rebuild its string pool,
+    // and copies taken along the way must not see later changes.
+    @Test
+    void randomChangesMatchAnArrayList() {
+        SplittableRandom random = new SplittableRandom(5);
+        ColumnarDinnerList list = new ColumnarDinnerList();
+        List<Dinner> expected = new ArrayList<>();
+        ColumnarDinnerList copy = null;
+        List<Dinner> copied = null;
+        for (int step = 0; step < 20_000; step++) {
+            int roll = random.nextInt(10);
+            if (expected.isEmpty() || roll < 4) {
+                int index = random.nextInt(expected.size() + 1);
+                Dinner dinner = randomDinner(random);
+                list.add(index, dinner);
+                expected.add(index, dinner);
+            } else if (roll < 6) {
+                int index = random.nextInt(expected.size());
+                Dinner dinner = randomDinner(random);
+                assertDinner(expected.set(index, dinner), list.set(index, dinner));
+            } else {
+                int index = random.nextInt(expected.size());
+                assertDinner(expected.remove(index), list.remove(index));
+            }
+            if (step % 1000 == 0) {
+                assertDinners(expected, list);
+                if (copy != null) {
+                    assertDinners(copied, copy);
+                }
+                copy = list.copy();
+                copied = new ArrayList<>(expected);
+            }
+        }
+        assertDinners(expected, list);
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertDinners(copied, copy);
+    }
+
+    // Editing the same dinner over and over leaves only replaced strings behind,
+    // which must be dropped from the pool as removed ones are.
+    @Test
+    void replacedStringsAreReclaimed() {
+        ColumnarDinnerList list = new ColumnarDinnerList();
+        list.add(new Dinner("Taco", ""));
+        long size = list.byteSize();
+        for (int i = 0; i < 100_000; i++) {
+            list.set(0, new Dinner("Dinner " + i, "about " + i));
+        }
+        assertEquals("Dinner 99999", list.get(0).getName());
+        assertTrue(list.byteSize() < size + 100_000, "byteSize " + list.byteSize());
+    }
+
+    private static Dinner randomDinner(SplittableRandom random) {
+        int n = random.nextInt(500);
+        double weight = random.nextInt(8) == 0 ? 0.5 + random.nextInt(4) : 1;
+        long created = random.nextInt(4) == 0 ? 0 : 1_000_000 + n;
+        return new Dinner("Dinner " + n, n % 3 == 0 ? "" : "about " + n, weight, created, random.nextInt(3));
+    }
+
+    private static void assertDinners(List<Dinner> expected, List<Dinner> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertDinner(expected.get(i), actual.get(i));
+        }
+    }
+
+    private static void assertDinner(Dinner expected, Dinner actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getWeight(), actual.getWeight());
+        assertEquals(expected.getCreated(), actual.getCreated());
+        assertEquals(expected.getPicks(), actual.getPicks());
+    }
+}
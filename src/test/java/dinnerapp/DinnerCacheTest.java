@@ -0,0 +1,73 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DinnerCacheTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void leastRecentlyUsedUserIsEvictedAndWrittenBack() throws IOException {
+        DinnerCache cache = new DinnerCache(2, 1000, 4);
+        add(cache, user("alice"), "Taco");
+        add(cache, user("bob"), "Sushi");
+        assertEquals(List.of("Taco"), cache.read(user("alice"), u -> names(u.dinners)));
+        add(cache, user("carol"), "Ramen");
+
+        assertEquals(2, cache.users());
+        assertEquals(1, cache.evictions());
+        assertEquals(1, cache.writeBacks());
+        assertEquals(List.of("Sushi"), names(DinnerStore.peek(user("bob"))));
+        long misses = cache.misses();
+        assertEquals(List.of("Taco"), cache.read(user("alice"), u -> names(u.dinners)));
+        assertEquals(misses, cache.misses());
+        assertEquals(List.of("Sushi"), cache.read(user("bob"), u -> names(u.dinners)));
+        assertEquals(misses + 1, cache.misses());
+        cache.invalidateAll();
+    }
+
+    @Test
+    void totalDinnersBoundTheCache() throws IOException {
+        DinnerCache cache = new DinnerCache(100, 5, 4);
+        for (String user : new String[] {"alice", "bob", "carol"}) {
+            add(cache, user(user), "One");
+            add(cache, user(user), "Two");
+        }
+        assertTrue(cache.dinners() <= 5, cache.toString());
+        assertEquals(2, cache.users());
+        assertEquals(4, cache.dinners());
+        // The one user left is kept even when it alone is over the limit.
+        for (int i = 0; i < 10; i++) {
+            add(cache, user("carol"), "More " + i);
+        }
+        assertEquals(1, cache.users());
+        assertEquals(12, cache.dinners());
+        cache.invalidateAll();
+        assertEquals(0, cache.dinners());
+        assertEquals(12, DinnerStore.peek(user("carol")).size());
+    }
+
+    private String user(String name) {
+        return new File(dir, name).getPath();
+    }
+
+    private static void add(DinnerCache cache, String user, String name) throws IOException {
+        cache.write(user, u -> {
+            Dinner dinner = new Dinner(name, "");
+            u.dinners.add(dinner);
+            u.store.logAdd(dinner);
+            return null;
+        });
+    }
+
+    private static List<String> names(List<Dinner> dinners) {
+        return dinners.stream().map(Dinner::getName).toList();
+    }
+}
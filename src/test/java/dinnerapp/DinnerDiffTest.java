@@ -0,0 +1,132 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DinnerDiffTest {
+    @Test
+    void equalListsHaveNoHunks() {
+        List<Dinner> list = dinners("a", "b", "c");
+        assertTrue(DinnerDiff.diff(list, dinners("a", "b", "c"), 10).isEmpty());
+    }
+
+    @Test
+    void insertionInTheMiddleIsOneHunk() {
+        List<DinnerDiff.Hunk> hunks = DinnerDiff.diff(dinners("a", "b", "c"), dinners("a", "x", "y", "b", "c"), 10);
+        assertEquals(1, hunks.size());
+        DinnerDiff.Hunk hunk = hunks.get(0);
+        assertEquals(1, hunk.oldStart);
+        assertEquals(1, hunk.oldEnd);
+        assertEquals(1, hunk.newStart);
+        assertEquals(3, hunk.newEnd);
+    }
+
+    @Test
+    void comparesNameAndDescriptionOnly() {
+        List<Dinner> old = List.of(new Dinner("a", "one", 1, 5, 0));
+        assertTrue(DinnerDiff.diff(old, List.of(new Dinner("a", "one", 2, 9, 7)), 10).isEmpty());
+        assertEquals(1, DinnerDiff.diff(old, List.of(new Dinner("a", "two")), 10).size());
+    }
+
+    @Test
+    void givesUpPastMaxEdits() {
+        List<Dinner> old = dinners("a", "b", "c", "d");
+        List<Dinner> changed = dinners("b", "a", "d", "c");
+        assertEquals(4, edits(DinnerDiff.diff(old, changed, 4)));
+        assertNull(DinnerDiff.diff(old, changed, 3));
+        assertNull(DinnerDiff.diff(dinners("a"), dinners("a", "b", "c"), 1));
+    }
+
+    @Test
+    void randomListsRebuildWithTheFewestEdits() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int round = 0; round < 500; round++) {
+            List<Dinner> old = randomList(random, random.nextInt(30));
+            List<Dinner> changed = mutate(random, old);
+            int fewest = old.size() + changed.size() - 2 * commonLength(old, changed);
+            List<DinnerDiff.Hunk> hunks = DinnerDiff.diff(old, changed, Integer.MAX_VALUE);
+            assertEquals(fewest, edits(hunks));
+            assertSameDinners(changed, apply(old, changed, hunks));
+            if (fewest > 0) {
+                assertNull(DinnerDiff.diff(old, changed, fewest - 1));
+            }
+            assertNotNull(DinnerDiff.diff(old, changed, fewest));
+        }
+    }
+
+    private static List<Dinner> dinners(String... names) {
+        List<Dinner> list = new ArrayList<>();
+        for (String name : names) {
+            list.add(new Dinner(name, ""));
+        }
+        return list;
+    }
+
+    // Few distinct names, so lists share plenty of runs.
+    private static List<Dinner> randomList(SplittableRandom random, int size) {
+        List<Dinner> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(new Dinner("d" + random.nextInt(5), ""));
+        }
+        return list;
+    }
+
+    private static List<Dinner> mutate(SplittableRandom random, List<Dinner> old) {
+        List<Dinner> changed = new ArrayList<>(old);
+        for (int edits = random.nextInt(8); edits > 0; edits--) {
+            if (changed.isEmpty() || random.nextBoolean()) {
+                changed.add(random.nextInt(changed.size() + 1), new Dinner("d" + random.nextInt(5), ""));
+            } else {
+                changed.remove(random.nextInt(changed.size()));
+            }
+        }
+        return changed;
+    }
+
+    private static int commonLength(List<Dinner> a, List<Dinner> b) {
+        int[][] lengths = new int[a.size() + 1][b.size() + 1];
+        for (int i = a.size() - 1; i >= 0; i--) {
+            for (int j = b.size() - 1; j >= 0; j--) {
+                lengths[i][j] = DinnerDiff.same(a.get(i), b.get(j))
+                        ? lengths[i + 1][j + 1] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[0][0];
+    }
+
+    private static int edits(List<DinnerDiff.Hunk> hunks) {
+        int edits = 0;
+        for (DinnerDiff.Hunk hunk : hunks) {
+            edits += hunk.oldEnd - hunk.oldStart + hunk.newEnd - hunk.newStart;
+        }
+        return edits;
+    }
+
+    // Replays the hunks on old, checking that what lies between them is unchanged.
+    private static List<Dinner> apply(List<Dinner> old, List<Dinner> changed, List<DinnerDiff.Hunk> hunks) {
+        List<Dinner> result = new ArrayList<>();
+        int oldPosition = 0;
+        for (DinnerDiff.Hunk hunk : hunks) {
+            assertTrue(hunk.oldStart >= oldPosition && hunk.oldEnd >= hunk.oldStart && hunk.newEnd >= hunk.newStart);
+            assertEquals(hunk.newStart - result.size(), hunk.oldStart - oldPosition);
+            result.addAll(old.subList(oldPosition, hunk.oldStart));
+            result.addAll(changed.subList(hunk.newStart, hunk.newEnd));
+            oldPosition = hunk.oldEnd;
+        }
+        result.addAll(old.subList(oldPosition, old.size()));
+        return result;
+    }
+
+    private static void assertSameDinners(List<Dinner> expected, List<Dinner> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(DinnerDiff.same(expected.get(i), actual.get(i)), "dinner " + i);
+        }
+    }
+}
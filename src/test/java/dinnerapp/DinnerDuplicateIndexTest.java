@@ -0,0 +1,140 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DinnerDuplicateIndexTest {
+    private static final String[] NAMES = {"Pizza Hut", "Burger King", "Taco Bell", "Café Nero", "Five Guys", "Table 12"};
+
+    @Test
+    void findsTheSameNameWrittenDifferently() {
+        DinnerDuplicateIndex index = prepared(new Dinner("Pizza Hut", ""), new Dinner("KFC", ""),
+                new Dinner("PizzaHut", ""), new Dinner("Cafe Nero", ""));
+        assertArrayEquals(new int[] {0, 2}, index.duplicatesOf(new Dinner("pizza hut ", ""), -1));
+        assertArrayEquals(new int[] {2}, index.duplicatesOf(new Dinner("Pizza Hut", ""), 0));
+        assertArrayEquals(new int[] {3}, index.duplicatesOf(new Dinner("CAFÉ-NERO", ""), -1));
+        assertArrayEquals(new int[0], index.duplicatesOf(new Dinner("Sushi Bar", ""), -1));
+    }
+
+    @Test
+    void differentNumbersAreNeverDuplicates() {
+        DinnerDuplicateIndex index = prepared(new Dinner("Table 12", ""));
+        assertArrayEquals(new int[0], index.duplicatesOf(new Dinner("Table 13", ""), -1));
+        assertArrayEquals(new int[] {0}, index.duplicatesOf(new Dinner("table12", ""), -1));
+    }
+
+    @Test
+    void similarDescriptionsHelpSimilarNames() {
+        DinnerDuplicateIndex index = prepared(new Dinner("Luigi's", "wood fired pizza on main street"));
+        assertArrayEquals(new int[] {0}, index.duplicatesOf(new Dinner("Luigi's Pizza Place", "wood fired pizza on main street"), -1));
+        assertArrayEquals(new int[0], index.duplicatesOf(new Dinner("Luigi's Pizza Place", "noodles"), -1));
+        assertArrayEquals(new int[0], index.duplicatesOf(new Dinner("Luigi's Pizza Place", ""), -1));
+    }
+
+    @Test
+    void changesBeforeWarmAreReplayed() {
+        DinnerDuplicateIndex index = new DinnerDuplicateIndex();
+        index.prepare(new ArrayList<>(List.of(new Dinner("Pizza Hut", ""), new Dinner("KFC", ""))));
+        index.inserted(0, new Dinner("Five Guys", ""));
+        index.changed(2, new Dinner("Taco Bell", ""));
+        index.removed(1);
+        assertArrayEquals(new int[0], index.duplicatesOf(new Dinner("taco bell", ""), -1));
+        index.warm();
+        assertTrue(index.isBuilt());
+        assertArrayEquals(new int[] {1}, index.duplicatesOf(new Dinner("taco bell", ""), -1));
+        assertArrayEquals(new int[] {0}, index.duplicatesOf(new Dinner("FiveGuys", ""), -1));
+        assertArrayEquals(new int[0], index.duplicatesOf(new Dinner("Pizza Hut", ""), -1));
+    }
+
+    // Random changes kept up to date in one index must give the same answers as
+    // an index built afresh from an ArrayList receiving the same changes, and
+    // every match must fall in the same cluster as the dinner it matched.
+    @Test
+    void randomChangesMatchAFreshIndex() {
+        SplittableRandom random = new SplittableRandom(13);
+        List<Dinner> dinners = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            dinners.add(randomDinner(random));
+        }
+        DinnerDuplicateIndex index = new DinnerDuplicateIndex();
+        index.prepare(new ArrayList<>(dinners));
+        index.warm();
+        for (int step = 0; step < 3000; step++) {
+            int roll = random.nextInt(10);
+            if (roll < 2) {
+                Dinner dinner = randomDinner(random);
+                dinners.add(dinner);
+                index.added(dinner);
+            } else if (dinners.isEmpty() || roll < 4) {
+                int position = random.nextInt(dinners.size() + 1);
+                Dinner dinner = randomDinner(random);
+                dinners.add(position, dinner);
+                index.inserted(position, dinner);
+            } else if (roll < 7) {
+                int position = random.nextInt(dinners.size());
+                Dinner dinner = randomDinner(random);
+                dinners.set(position, dinner);
+                index.changed(position, dinner);
+            } else {
+                int position = random.nextInt(dinners.size());
+                dinners.remove(position);
+                index.removed(position);
+            }
+            if (step % 300 == 0) {
+                DinnerDuplicateIndex fresh = prepared(dinners.toArray(new Dinner[0]));
+                int[] cluster = clusterOf(DinnerDuplicateIndex.clusters(dinners), dinners.size());
+                for (int i = 0; i < dinners.size(); i++) {
+                    int[] matches = index.duplicatesOf(dinners.get(i), i);
+                    assertArrayEquals(fresh.duplicatesOf(dinners.get(i), i), matches);
+                    for (int match : matches) {
+                        assertTrue(cluster[i] >= 0 && cluster[i] == cluster[match], i + " and " + match);
+                    }
+                }
+            }
+        }
+    }
+
+    private static DinnerDuplicateIndex prepared(Dinner... dinners) {
+        DinnerDuplicateIndex index = new DinnerDuplicateIndex();
+        index.prepare(new ArrayList<>(List.of(dinners)));
+        assertTrue(index.isPrepared());
+        index.warm();
+        return index;
+    }
+
+    // One of a few names, changed in case, spacing or punctuation, or not at all.
+    private static Dinner randomDinner(SplittableRandom random) {
+        String name = NAMES[random.nextInt(NAMES.length)];
+        switch (random.nextInt(4)) {
+            case 0:
+                name = name.toUpperCase();
+                break;
+            case 1:
+                name = name.replace(" ", "");
+                break;
+            case 2:
+                name = name + "!";
+                break;
+            default:
+                break;
+        }
+        return new Dinner(name, "");
+    }
+
+    private static int[] clusterOf(List<int[]> clusters, int size) {
+        int[] cluster = new int[size];
+        Arrays.fill(cluster, -1);
+        for (int c = 0; c < clusters.size(); c++) {
+            for (int position : clusters.get(c)) {
+                cluster[position] = c;
+            }
+        }
+        return cluster;
+    }
+}
@@ -0,0 +1,151 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DinnerPickerTest {
+    private static final int DRAWS = 200_000;
+
+    @Test
+    void emptyListHasNoPick() {
+        assertEquals(-1, new DinnerPicker(new ArrayList<>()).pick(new SplittableRandom(1), 0));
+    }
+
+    @Test
+    void equalWeightsPickUniformly() {
+        List<Dinner> dinners = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            dinners.add(new Dinner("d" + i, ""));
+        }
+        assertFrequencies(dinners, new DinnerPicker(dinners), new SplittableRandom(2));
+    }
+
+    @Test
+    void picksFollowTheWeights() {
+        List<Dinner> dinners = new ArrayList<>();
+        for (double weight : new double[] {1, 2, 3, 4, 0.5}) {
+            dinners.add(new Dinner("w" + weight, "", weight));
+        }
+        assertFrequencies(dinners, new DinnerPicker(dinners), new SplittableRandom(3));
+    }
+
+    // Random changes reported to the picker as the list makes them; the alias
+    // table must keep matching the list's weights.
+    @Test
+    void picksFollowTheWeightsAfterRandomChanges() {
+        SplittableRandom random = new SplittableRandom(4);
+        List<Dinner> dinners = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            dinners.add(randomDinner(random));
+        }
+        DinnerPicker picker = new DinnerPicker(dinners);
+        picker.pick(random, 0);
+        for (int round = 0; round < 5; round++) {
+            for (int step = 0; step < 20; step++) {
+                int roll = random.nextInt(4);
+                if (roll == 0) {
+                    Dinner dinner = randomDinner(random);
+                    dinners.add(dinner);
+                    picker.added(dinner);
+                } else if (roll == 1 || dinners.size() < 3) {
+                    int index = random.nextInt(dinners.size() + 1);
+                    Dinner dinner = randomDinner(random);
+                    dinners.add(index, dinner);
+                    picker.inserted(index, dinner);
+                } else if (roll == 2) {
+                    int index = random.nextInt(dinners.size());
+                    Dinner dinner = randomDinner(random);
+                    dinners.set(index, dinner);
+                    picker.changed(index, dinner);
+                } else {
+                    int index = random.nextInt(dinners.size());
+                    dinners.remove(index);
+                    picker.removed(index);
+                }
+            }
+            while (dinners.size() > 8) {
+                dinners.remove(dinners.size() - 1);
+                picker.removed(dinners.size());
+            }
+            assertFrequencies(dinners, picker, random);
+        }
+    }
+
+    @Test
+    void recentPicksAreNotRepeated() {
+        SplittableRandom random = new SplittableRandom(5);
+        List<Dinner> dinners = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            dinners.add(new Dinner("d" + i, "", i == 0 ? 1000 : 1));
+        }
+        DinnerPicker picker = new DinnerPicker(dinners);
+        List<Integer> picks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int index = picker.pick(random, 3);
+            for (int j = Math.max(0, picks.size() - 3); j < picks.size(); j++) {
+                assertNotEquals(picks.get(j), index);
+            }
+            picks.add(index);
+        }
+    }
+
+    @Test
+    void batchOfPicksIsDistinct() {
+        SplittableRandom random = new SplittableRandom(6);
+        List<Dinner> dinners = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            dinners.add(new Dinner("d" + i, "", 1 + i));
+        }
+        DinnerPicker picker = new DinnerPicker(dinners);
+        for (int round = 0; round < 100; round++) {
+            int[] picks = new int[5];
+            picker.pick(random, picks.length, picks);
+            Set<Integer> distinct = new HashSet<>();
+            for (int index : picks) {
+                distinct.add(index);
+            }
+            assertEquals(picks.length, distinct.size());
+        }
+    }
+
+    @Test
+    void removalShiftsTheHistory() {
+        SplittableRandom random = new SplittableRandom(7);
+        List<Dinner> dinners = new ArrayList<>(List.of(new Dinner("a", ""), new Dinner("b", ""), new Dinner("c", "")));
+        DinnerPicker picker = new DinnerPicker(dinners);
+        picker.record(2);
+        dinners.remove(0);
+        picker.removed(0);
+        assertTrue(picker.isRecent(1, 1));
+        assertFalse(picker.isRecent(0, 1));
+    }
+
+    private static Dinner randomDinner(SplittableRandom random) {
+        return new Dinner("d", "", random.nextInt(3) == 0 ? 1 : 0.5 + random.nextInt(6));
+    }
+
+    // Each dinner's share of DRAWS picks is within a few standard deviations of
+    // its share of the total weight.
+    private static void assertFrequencies(List<Dinner> dinners, DinnerPicker picker, SplittableRandom random) {
+        int[] counts = new int[dinners.size()];
+        for (int i = 0; i < DRAWS; i++) {
+            counts[picker.pick(random, 0)]++;
+        }
+        double total = 0;
+        for (Dinner dinner : dinners) {
+            total += dinner.getWeight();
+        }
+        for (int i = 0; i < counts.length; i++) {
+            double p = dinners.get(i).getWeight() / total;
+            double deviation = Math.sqrt(DRAWS * p * (1 - p));
+            assertEquals(DRAWS * p, counts[i], 5 * deviation + 1, "dinner " + i);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DinnerSearchIndexTest {
+    private static final String[] WORDS = {"pizza", "pasta", "taco", "sushi", "ramen", "curry", "pho", "bbq", "Pie"};
+
+    @Test
+    void longQueriesMatchSubstringsOfNameOrDescription() {
+        DinnerSearchIndex index = prepared(new Dinner("Pizza Hut", "Pizza restaurant"),
+                new Dinner("KFC", "Fried chicken"), new Dinner("Noodles", "Ramen and pho"));
+        assertArrayEquals(new int[] {0}, index.search("zza"));
+        assertArrayEquals(new int[] {1}, index.search("CHICK"));
+        assertArrayEquals(new int[] {2}, index.search("men and"));
+        assertArrayEquals(new int[0], index.search("burger"));
+    }
+
+    @Test
+    void shortQueriesMatchTheStartOfAWord() {
+        DinnerSearchIndex index = prepared(new Dinner("Pizza Hut", ""), new Dinner("Chop suey", ""), new Dinner("Ph", ""));
+        assertArrayEquals(new int[] {0}, index.search("h"));
+        assertArrayEquals(new int[] {0, 2}, index.search("p"));
+        assertArrayEquals(new int[] {1}, index.search("su"));
+        assertArrayEquals(new int[0], index.search("ut"));
+        assertArrayEquals(new int[0], index.search(""));
+    }
+
+    // Random changes, followed by random queries compared with a scan of an
+    // ArrayList receiving the same changes. Enough changes to make the index
+    // rebuild its postings along the way.
+    @Test
+    void randomChangesMatchAScan() {
+        SplittableRandom random = new SplittableRandom(3);
+        List<Dinner> dinners = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            dinners.add(randomDinner(random));
+        }
+        DinnerSearchIndex index = new DinnerSearchIndex();
+        index.prepare(new ArrayList<>(dinners));
+        for (int step = 0; step < 5000; step++) {
+            int roll = random.nextInt(10);
+            if (roll < 2) {
+                Dinner dinner = randomDinner(random);
+                dinners.add(dinner);
+                index.added(dinner);
+            } else if (dinners.isEmpty() || roll < 4) {
+                int position = random.nextInt(dinners.size() + 1);
+                Dinner dinner = randomDinner(random);
+                dinners.add(position, dinner);
+                index.inserted(position, dinner);
+            } else if (roll < 7) {
+                int position = random.nextInt(dinners.size());
+                Dinner dinner = randomDinner(random);
+                dinners.set(position, dinner);
+                index.changed(position, dinner);
+            } else {
+                int position = random.nextInt(dinners.size());
+                dinners.remove(position);
+                index.removed(position);
+            }
+            if (step % 25 == 0) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                int start = random.nextInt(word.length());
+                String query = word.substring(start, start + 1 + random.nextInt(word.length() - start));
+                assertArrayEquals(scan(dinners, query), index.search(query), query);
+            }
+        }
+    }
+
+    @Test
+    void changesBeforeTheFirstSearchAreReplayed() {
+        DinnerSearchIndex index = prepared(new Dinner("Pizza Hut", ""), new Dinner("KFC", ""));
+        index.inserted(0, new Dinner("Taco Bell", ""));
+        index.changed(2, new Dinner("Sushi", ""));
+        index.removed(1);
+        index.added(new Dinner("Pizza Express", ""));
+        assertArrayEquals(new int[] {2}, index.search("pizza"));
+        assertArrayEquals(new int[] {0}, index.search("ta"));
+        assertArrayEquals(new int[] {1}, index.search("sushi"));
+    }
+
+    @Test
+    void resetForgetsTheList() {
+        DinnerSearchIndex index = prepared(new Dinner("Taco", ""));
+        index.reset();
+        assertFalse(index.isPrepared());
+        index.prepare(List.of(new Dinner("Sushi", ""), new Dinner("Taco", "")));
+        assertArrayEquals(new int[] {1}, index.search("taco"));
+    }
+
+    private static DinnerSearchIndex prepared(Dinner... dinners) {
+        DinnerSearchIndex index = new DinnerSearchIndex();
+        index.prepare(new ArrayList<>(List.of(dinners)));
+        assertTrue(index.isPrepared());
+        return index;
+    }
+
+    private static Dinner randomDinner(SplittableRandom random) {
+        return new Dinner(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)],
+                random.nextBoolean() ? "" : "with " + WORDS[random.nextInt(WORDS.length)]);
+    }
+
+    private static int[] scan(List<Dinner> dinners, String query) {
+        String q = query.toLowerCase(Locale.ROOT);
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < dinners.size(); i++) {
+            Dinner dinner = dinners.get(i);
+            if (matches(dinner.getName().toLowerCase(Locale.ROOT), q)
+                    || matches(dinner.getDescription().toLowerCase(Locale.ROOT), q)) {
+                positions.add(i);
+            }
+        }
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static boolean matches(String text, String q) {
+        if (q.length() >= 3) {
+            return text.contains(q);
+        }
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.startsWith(q)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DinnerSortIndexTest {
+    @Test
+    void listOrderMapsRowsToThemselves() {
+        DinnerSortIndex index = new DinnerSortIndex();
+        index.setOrder(DinnerSortIndex.Order.LIST, List.of(new Dinner("b", ""), new Dinner("a", "")));
+        assertFalse(index.isSorted());
+        assertEquals(1, index.positionAt(1));
+        assertEquals(0, index.rowOf(0));
+    }
+
+    @Test
+    void sortsByNameIgnoringCase() {
+        List<Dinner> dinners = List.of(new Dinner("pizza", ""), new Dinner("Burger", ""), new Dinner("apple", ""));
+        DinnerSortIndex index = new DinnerSortIndex();
+        index.setOrder(DinnerSortIndex.Order.NAME, dinners);
+        assertTrue(index.isSorted());
+        assertEquals(2, index.positionAt(0));
+        assertEquals(1, index.positionAt(1));
+        assertEquals(0, index.positionAt(2));
+        assertEquals(2, index.rowOf(0));
+    }
+
+    // Every order is kept up to date through random changes and compared with a
+    // sorted copy of an ArrayList receiving the same changes.
+    @Test
+    void randomChangesMatchASortedCopy() {
+        SplittableRandom random = new SplittableRandom(11);
+        List<Dinner> dinners = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            dinners.add(randomDinner(random));
+        }
+        DinnerSortIndex index = new DinnerSortIndex();
+        for (DinnerSortIndex.Order order : DinnerSortIndex.Order.values()) {
+            index.setOrder(order, dinners);
+        }
+        for (int step = 0; step < 2000; step++) {
+            int roll = random.nextInt(10);
+            if (dinners.isEmpty() || roll < 4) {
+                int position = random.nextInt(dinners.size() + 1);
+                Dinner dinner = randomDinner(random);
+                dinners.add(position, dinner);
+                index.inserted(position, dinner);
+            } else if (roll < 7) {
+                int position = random.nextInt(dinners.size());
+                Dinner dinner = randomDinner(random);
+                dinners.set(position, dinner);
+                index.changed(position, dinner);
+            } else {
+                int position = random.nextInt(dinners.size());
+                dinners.remove(position);
+                index.removed(position);
+            }
+            if (step % 50 == 0) {
+                for (DinnerSortIndex.Order order : DinnerSortIndex.Order.values()) {
+                    index.setOrder(order, dinners);
+                    check(index, order, dinners);
+                }
+            }
+        }
+    }
+
+    @Test
+    void resetRebuildsFromTheNextList() {
+        DinnerSortIndex index = new DinnerSortIndex();
+        index.setOrder(DinnerSortIndex.Order.NAME, List.of(new Dinner("b", ""), new Dinner("a", "")));
+        index.reset();
+        List<Dinner> replaced = List.of(new Dinner("c", ""), new Dinner("a", ""), new Dinner("b", ""));
+        index.setOrder(DinnerSortIndex.Order.NAME, replaced);
+        check(index, DinnerSortIndex.Order.NAME, replaced);
+    }
+
+    // Row by row, the dinners match a sorted copy of the list, up to ties, and
+    // rowOf inverts positionAt.
+    private static void check(DinnerSortIndex index, DinnerSortIndex.Order order, List<Dinner> dinners) {
+        List<Dinner> expected = new ArrayList<>(dinners);
+        if (order.comparator != null) {
+            expected.sort(order.comparator);
+        }
+        boolean[] seen = new boolean[dinners.size()];
+        for (int row = 0; row < dinners.size(); row++) {
+            int position = index.positionAt(row);
+            assertFalse(seen[position], "position " + position + " shows twice");
+            seen[position] = true;
+            assertEquals(row, index.rowOf(position));
+            Dinner dinner = dinners.get(position);
+            if (order.comparator == null) {
+                assertSame(expected.get(row), dinner);
+            } else {
+                assertEquals(0, order.comparator.compare(expected.get(row), dinner), order + " row " + row);
+            }
+        }
+    }
+
+    private static Dinner randomDinner(SplittableRandom random) {
+        return new Dinner("Dinner " + (char) ('a' + random.nextInt(8)), "", 1, random.nextInt(5), random.nextInt(4));
+    }
+}
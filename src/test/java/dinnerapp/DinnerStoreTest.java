@@ -0,0 +1,212 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DinnerStoreTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void newUserStartsEmpty() throws IOException {
+        DinnerStore store = new DinnerStore(user());
+        assertTrue(store.load().isEmpty());
+        store.close();
+        assertTrue(DinnerStore.peek(user()).isEmpty());
+    }
+
+    @Test
+    void journalIsReplayedOnLoad() throws Exception {
+        DinnerStore store = new DinnerStore(user());
+        List<Dinner> dinners = store.load();
+        dinners.add(new Dinner("Taco", "Tuesday"));
+        store.logAdd(dinners.get(0));
+        dinners.add(new Dinner("Sushi", ""));
+        store.logAdd(dinners.get(1));
+        dinners.set(0, new Dinner("Tacos", "Tuesday", 2, 1234, 5));
+        store.logSet(0, dinners.get(0));
+        dinners.add(0, new Dinner("Ramen", ""));
+        store.logEdits(List.of(DinnerEdit.insert(0, dinners.get(0))));
+        dinners.remove(2);
+        store.logRemove(2);
+        store.close();
+        DinnerStore.awaitWrites();
+
+        assertTrue(new File(user() + "_dinners.journal").length() > Long.BYTES);
+        assertDinners(dinners, DinnerStore.peek(user()));
+        DinnerStore reopened = new DinnerStore(user());
+        assertDinners(dinners, reopened.load());
+        reopened.close();
+    }
+
+    @Test
+    void recordTornByACrashIsCutOff() throws Exception {
+        DinnerStore store = new DinnerStore(user());
+        List<Dinner> dinners = store.load();
+        dinners.add(new Dinner("Taco", ""));
+        store.logAdd(dinners.get(0));
+        store.close();
+        DinnerStore.awaitWrites();
+        File journal = new File(user() + "_dinners.journal");
+        long length = journal.length();
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+            raf.seek(length);
+            // An OP_ADD and its index, with the dinner missing.
+            raf.write(new byte[] {1, -1, -1, -1, -1, 0, 0});
+        }
+
+        DinnerStore reopened = new DinnerStore(user());
+        assertDinners(dinners, reopened.load());
+        reopened.close();
+        assertEquals(length, journal.length());
+    }
+
+    @Test
+    void legacySnapshotIsRewrittenOnLoad() throws Exception {
+        List<Dinner> dinners = new ArrayList<>(List.of(new Dinner("Taco", "Tuesday"), new Dinner("Sushi", "")));
+        File snapshot = new File(user() + "_dinners.dat");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(snapshot))) {
+            out.writeObject(dinners);
+        }
+        assertTrue(DinnerCodec.isLegacy(snapshot));
+
+        DinnerStore store = new DinnerStore(user());
+        assertDinners(dinners, store.load());
+        store.close();
+        DinnerStore.awaitWrites();
+        assertFalse(DinnerCodec.isLegacy(snapshot));
+        DinnerStore reopened = new DinnerStore(user());
+        assertDinners(dinners, reopened.load());
+        reopened.close();
+    }
+
+    @Test
+    void largeSnapshotIsMappedAndStaysEditable() throws Exception {
+        List<Dinner> dinners = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            dinners.add(new Dinner("Dinner " + i, "x".repeat(60)));
+        }
+        File snapshot = new File(user() + "_dinners.dat");
+        DinnerCodec.writeFile(snapshot, dinners, 1);
+        assertTrue(snapshot.length() >= DinnerStore.MAPPED_THRESHOLD);
+
+        DinnerStore store = new DinnerStore(user());
+        List<Dinner> loaded = store.load();
+        assertInstanceOf(MappedDinnerList.class, loaded);
+        assertDinners(dinners, loaded);
+        Dinner tacos = new Dinner("Tacos", "Tuesday");
+        Dinner ramen = new Dinner("Ramen", "");
+        for (List<Dinner> list : List.of(dinners, loaded)) {
+            list.set(5, tacos);
+            list.remove(0);
+            list.add(ramen);
+        }
+        assertDinners(dinners, loaded);
+        store.logSet(5, tacos);
+        store.logRemove(0);
+        store.logAdd(ramen);
+        store.close();
+        DinnerStore.awaitWrites();
+
+        DinnerStore reopened = new DinnerStore(user());
+        assertDinners(dinners, reopened.load());
+        reopened.close();
+    }
+
+    // Random changes, logged as the app logs them, until the journal has been
+    // compacted into the snapshot several times; every reload must match an
+    // ArrayList that received the same changes.
+    @Test
+    void randomChangesSurviveCompaction() throws Exception {
+        SplittableRandom random = new SplittableRandom(17);
+        List<Dinner> expected = new ArrayList<>();
+        File snapshot = new File(user() + "_dinners.dat");
+        long snapshots = 0;
+        long lastModified = 0;
+        for (int session = 0; session < 8; session++) {
+            DinnerStore store = new DinnerStore(user());
+            List<Dinner> dinners = store.load();
+            assertDinners(expected, dinners);
+            for (int step = 0; step < 400; step++) {
+                int roll = random.nextInt(10);
+                if (dinners.isEmpty() || roll < 4) {
+                    Dinner dinner = randomDinner(random);
+                    dinners.add(dinner);
+                    expected.add(dinner);
+                    store.logAdd(dinner);
+                } else if (roll < 6) {
+                    int index = random.nextInt(dinners.size() + 1);
+                    DinnerEdit edit = DinnerEdit.insert(index, randomDinner(random));
+                    edit.applyTo(dinners);
+                    edit.applyTo(expected);
+                    store.logEdits(List.of(edit));
+                } else if (roll < 8) {
+                    int index = random.nextInt(dinners.size());
+                    Dinner dinner = randomDinner(random);
+                    dinners.set(index, dinner);
+                    expected.set(index, dinner);
+                    store.logSet(index, dinner);
+                } else {
+                    int index = random.nextInt(dinners.size());
+                    dinners.remove(index);
+                    expected.remove(index);
+                    store.logRemove(index);
+                }
+            }
+            store.close();
+            DinnerStore.awaitWrites();
+            assertFalse(new File(user() + "_dinners.journal.old").exists());
+            if (snapshot.lastModified() != lastModified) {
+                lastModified = snapshot.lastModified();
+                snapshots++;
+            }
+            assertDinners(expected, DinnerStore.peek(user()));
+        }
+        assertTrue(snapshots > 1, "compacted " + snapshots + " times");
+        assertTrue(new File(user() + "_dinners.journal").length() < DinnerStore.COMPACT_THRESHOLD + 4096);
+    }
+
+    @Test
+    void loadFailureIsReported() throws Exception {
+        try (FileOutputStream out = new FileOutputStream(user() + "_dinners.dat")) {
+            out.write("not a dinner list".getBytes());
+        }
+        DinnerStore store = new DinnerStore(user());
+        assertThrows(IOException.class, store::load);
+        store.close();
+    }
+
+    private String user() {
+        return new File(dir, "alice").getPath();
+    }
+
+    // Long descriptions, so the journal passes COMPACT_THRESHOLD within a session.
+    private static Dinner randomDinner(SplittableRandom random) {
+        int n = random.nextInt(10_000);
+        return new Dinner("Dinner " + n, "x".repeat(50 + n % 100), 1 + n % 3, n, n % 5);
+    }
+
+    private static void assertDinners(List<Dinner> expected, List<Dinner> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Dinner e = expected.get(i);
+            Dinner a = actual.get(i);
+            assertEquals(e.getName(), a.getName(), "dinner " + i);
+            assertEquals(e.getDescription(), a.getDescription(), "dinner " + i);
+            assertEquals(e.getWeight(), a.getWeight(), "dinner " + i);
+            assertEquals(e.getCreated(), a.getCreated(), "dinner " + i);
+            assertEquals(e.getPicks(), a.getPicks(), "dinner " + i);
+        }
+    }
+}
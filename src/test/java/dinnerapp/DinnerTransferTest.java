@@ -0,0 +1,81 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DinnerTransferTest {
+    private static final List<Dinner> AWKWARD = List.of(new Dinner("Taco", "Tuesday"),
+            new Dinner("Fish, chips", "with \"mushy\" peas", 2.5), new Dinner("Soup", "line one\nline two"),
+            new Dinner("Café", ""));
+
+    @Test
+    void csvRoundTrips() throws IOException {
+        assertDinners(AWKWARD, roundTrip(DinnerTransfer.Format.CSV, AWKWARD));
+    }
+
+    @Test
+    void jsonLinesRoundTrip() throws IOException {
+        assertDinners(AWKWARD, roundTrip(DinnerTransfer.Format.JSON_LINES, AWKWARD));
+    }
+
+    // Enough dinners for many chunks parsed in parallel; they must come back in order.
+    @Test
+    void chunksKeepTheirOrder() throws IOException {
+        List<Dinner> dinners = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            dinners.add(new Dinner("Dinner " + i, i % 7 == 0 ? "multi\nline" : "", 1 + i % 3));
+        }
+        assertDinners(dinners, roundTrip(DinnerTransfer.Format.CSV, dinners));
+        assertDinners(dinners, roundTrip(DinnerTransfer.Format.JSON_LINES, dinners));
+    }
+
+    @Test
+    void errorsNameTheLine() {
+        String csv = "name,description,weight\nTaco,\"two\nlines\",1\n,no name,1\n";
+        IOException e = assertThrows(IOException.class, () -> read(csv, DinnerTransfer.Format.CSV));
+        assertTrue(e.getMessage().startsWith("Line 4:"), e.getMessage());
+        e = assertThrows(IOException.class, () -> read("Taco,x,heavy\n", DinnerTransfer.Format.CSV));
+        assertTrue(e.getMessage().contains("Line 1"), e.getMessage());
+        e = assertThrows(IOException.class, () -> read("Taco,\"open\n", DinnerTransfer.Format.CSV));
+        assertTrue(e.getMessage().contains("unterminated"), e.getMessage());
+    }
+
+    @Test
+    void progressCanCancel() {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            csv.append("Dinner ").append(i).append('\n');
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        assertThrows(InterruptedIOException.class, () ->
+                DinnerTransfer.read(new ByteArrayInputStream(bytes), DinnerTransfer.Format.CSV, read -> false));
+    }
+
+    private static List<Dinner> roundTrip(DinnerTransfer.Format format, List<Dinner> dinners) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DinnerTransfer.write(out, format, dinners);
+        return DinnerTransfer.read(new ByteArrayInputStream(out.toByteArray()), format, read -> true);
+    }
+
+    private static List<Dinner> read(String text, DinnerTransfer.Format format) throws IOException {
+        return DinnerTransfer.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), format, read -> true);
+    }
+
+    private static void assertDinners(List<Dinner> expected, List<Dinner> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getName(), actual.get(i).getName(), "dinner " + i);
+            assertEquals(expected.get(i).getDescription(), actual.get(i).getDescription(), "dinner " + i);
+            assertEquals(expected.get(i).getWeight(), actual.get(i).getWeight(), "dinner " + i);
+        }
+    }
+}
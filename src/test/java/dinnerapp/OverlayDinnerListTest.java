@@ -0,0 +1,100 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverlayDinnerListTest {
+    private static final DinnerCatalog CATALOG = DinnerCatalog.current();
+
+    @Test
+    void untouchedCatalogIsOneRun() {
+        OverlayDinnerList list = new OverlayDinnerList(CATALOG);
+        assertEquals(1, list.runs());
+        assertEquals(CATALOG.size(), list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertSame(CATALOG.get(i), list.get(i));
+            assertEquals(CATALOG.weight(i), list.weight(i));
+        }
+    }
+
+    @Test
+    void changesSplitTheCatalogRange() {
+        OverlayDinnerList list = new OverlayDinnerList(CATALOG);
+        Dinner own = new Dinner("Taco", "");
+        list.add(1, own);
+        assertEquals(3, list.runs());
+        assertSame(own, list.ownDinner(1));
+        assertEquals(1, list.catalogCount(0));
+        assertEquals(1, list.catalogStart(2));
+
+        list.remove(1);
+        assertEquals(1, list.runs());
+
+        list.remove(1);
+        assertEquals(2, list.runs());
+        assertSame(CATALOG.get(2), list.get(1));
+
+        Dinner edited = CATALOG.get(0).edited("Burger King", "");
+        list.set(0, edited);
+        assertSame(edited, list.ownDinner(0));
+        assertEquals(CATALOG.size() - 1, list.size());
+    }
+
+    // Random changes compared with an ArrayList receiving the same ones. After
+    // each round the runs are read back into a fresh list, as DinnerCodec does,
+    // and a copy taken earlier must not see later changes.
+    @Test
+    void randomChangesMatchAnArrayList() {
+        SplittableRandom random = new SplittableRandom(9);
+        OverlayDinnerList list = new OverlayDinnerList(CATALOG);
+        List<Dinner> expected = new ArrayList<>(list);
+        OverlayDinnerList copy = list.copy();
+        List<Dinner> copied = new ArrayList<>(expected);
+        for (int round = 0; round < 200; round++) {
+            for (int step = 0; step < 10; step++) {
+                int roll = random.nextInt(10);
+                if (expected.isEmpty() || roll < 4) {
+                    int index = random.nextInt(expected.size() + 1);
+                    Dinner dinner = new Dinner("own " + round + "-" + step, "");
+                    list.add(index, dinner);
+                    expected.add(index, dinner);
+                } else if (roll < 6) {
+                    int index = random.nextInt(expected.size());
+                    Dinner dinner = new Dinner("set " + round + "-" + step, "");
+                    assertSame(expected.set(index, dinner), list.set(index, dinner));
+                } else {
+                    int index = random.nextInt(expected.size());
+                    assertSame(expected.remove(index), list.remove(index));
+                }
+            }
+            assertEquals(expected, list);
+            assertEquals(copied, copy);
+            assertEquals(expected, reread(list));
+            copy = list.copy();
+            copied = new ArrayList<>(expected);
+            if (expected.isEmpty()) {
+                list = new OverlayDinnerList(CATALOG);
+                expected = new ArrayList<>(list);
+            }
+        }
+    }
+
+    private static OverlayDinnerList reread(OverlayDinnerList list) {
+        OverlayDinnerList read = new OverlayDinnerList(CATALOG);
+        read.clear();
+        for (int run = 0; run < list.runs(); run++) {
+            Dinner own = list.ownDinner(run);
+            if (own != null) {
+                read.appendOwn(own);
+            } else {
+                read.appendRange(list.catalogStart(run), list.catalogCount(run));
+            }
+        }
+        return read;
+    }
+}
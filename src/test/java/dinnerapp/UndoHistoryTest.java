@@ -0,0 +1,103 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoHistoryTest {
+    private final List<Dinner> dinners = new ArrayList<>();
+    private final UndoHistory history = new UndoHistory();
+
+    @AfterEach
+    void close() {
+        history.close();
+    }
+
+    @Test
+    void undoAndRedoMoveChangesBetweenTheStacks() {
+        perform("Add", DinnerEdit.insert(0, new Dinner("Taco", "")));
+        perform("Edit", DinnerEdit.set(0, dinners.get(0), new Dinner("Tacos", "")));
+        assertEquals("Edit", history.undoLabel());
+        assertNull(history.redoLabel());
+
+        assertTrue(history.undo(this::apply));
+        assertEquals("Taco", dinners.get(0).getName());
+        assertEquals("Add", history.undoLabel());
+        assertEquals("Edit", history.redoLabel());
+
+        assertTrue(history.undo(this::apply));
+        assertTrue(dinners.isEmpty());
+        assertFalse(history.undo(this::apply));
+
+        assertTrue(history.redo(this::apply));
+        assertTrue(history.redo(this::apply));
+        assertEquals("Tacos", dinners.get(0).getName());
+        assertFalse(history.redo(this::apply));
+    }
+
+    @Test
+    void recordingClearsRedo() {
+        perform("Add", DinnerEdit.insert(0, new Dinner("Taco", "")));
+        history.undo(this::apply);
+        perform("Add", DinnerEdit.insert(0, new Dinner("Sushi", "")));
+        assertNull(history.redoLabel());
+        assertEquals("Add", history.undoLabel());
+    }
+
+    @Test
+    void failedUndoStaysUndoable() {
+        perform("Add", DinnerEdit.insert(0, new Dinner("Taco", "")));
+        assertTrue(history.undo((edits, done) -> done.accept(false)));
+        assertEquals("Add", history.undoLabel());
+        assertNull(history.redoLabel());
+    }
+
+    @Test
+    void clearDuringAnUndoDropsTheChange() {
+        perform("Add", DinnerEdit.insert(0, new Dinner("Taco", "")));
+        assertTrue(history.undo((edits, done) -> {
+            history.clear();
+            done.accept(true);
+        }));
+        assertNull(history.undoLabel());
+        assertNull(history.redoLabel());
+    }
+
+    // More edits than fit in memory, so the oldest changes spill to the file and
+    // are read back, in order, as undo reaches them.
+    @Test
+    void spilledChangesUndoInOrder() {
+        int changes = UndoHistory.MAX_MEMORY_EDITS + 500;
+        for (int i = 0; i < changes; i++) {
+            perform("Add " + i, DinnerEdit.insert(i, new Dinner("Dinner " + i, "")));
+        }
+        for (int i = changes - 1; i >= 0; i--) {
+            assertEquals("Add " + i, history.undoLabel());
+            assertTrue(history.undo(this::apply));
+            assertEquals(i, dinners.size());
+        }
+        assertNull(history.undoLabel());
+        for (int i = 0; i < changes; i++) {
+            assertTrue(history.redo(this::apply));
+        }
+        assertEquals(changes, dinners.size());
+        assertEquals("Dinner " + (changes - 1), dinners.get(changes - 1).getName());
+    }
+
+    private void perform(String label, DinnerEdit edit) {
+        edit.applyTo(dinners);
+        history.record(label, List.of(edit));
+    }
+
+    private void apply(List<DinnerEdit> edits, Consumer<Boolean> done) {
+        for (DinnerEdit edit : edits) {
+            edit.applyTo(dinners);
+        }
+        done.accept(true);
+    }
+}
@@ -0,0 +1,108 @@
+package dinnerapp;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserStoreTest {
+    private static final int ITERATIONS = 1000;
+
+    @TempDir
+    File dir;
+    private File log;
+    private File index;
+
+    @BeforeEach
+    void files() {
+        log = new File(dir, "admin.txt");
+        index = new File(dir, "admin.idx");
+    }
+
+    @Test
+    void registeredUsersCanLogIn() throws IOException {
+        UserStore store = open();
+        assertTrue(store.register("alice", "secret"));
+        assertFalse(store.register("alice", "other"));
+        assertTrue(store.exists("alice"));
+        assertFalse(store.exists("bob"));
+        assertTrue(store.authenticate("alice", "secret"));
+        assertFalse(store.authenticate("alice", "Secret"));
+        assertFalse(store.authenticate("bob", "secret"));
+        assertFalse(Files.readString(log.toPath()).contains("secret"));
+    }
+
+    @Test
+    void usernamesCannotNameOtherFiles() {
+        UserStore store = new UserStore(log, index, ITERATIONS);
+        assertThrows(IllegalArgumentException.class, () -> store.register("../alice", "secret"));
+        assertFalse(UserStore.isValidUsername(".hidden"));
+        assertFalse(UserStore.isValidUsername(""));
+        assertTrue(UserStore.isValidUsername("alice.b-2"));
+    }
+
+    // Another instance's registrations show up without reopening.
+    @Test
+    void instancesShareTheFiles() throws IOException {
+        UserStore first = open();
+        UserStore second = open();
+        for (int i = 0; i < 100; i++) {
+            assertTrue((i % 2 == 0 ? first : second).register("user" + i, "password" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue((i % 2 == 0 ? second : first).authenticate("user" + i, "password" + i), "user" + i);
+        }
+        assertTrue(open().authenticate("user99", "password99"));
+    }
+
+    // Many users make the index grow; reopening reads it back, and indexes lines
+    // appended since it was written.
+    @Test
+    void indexSurvivesReopening() throws IOException {
+        UserStore store = open();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(store.register("user" + i, "password" + i));
+        }
+        Files.write(log.toPath(), "bob:hunter2\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        UserStore reopened = open();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(reopened.authenticate("user" + i, "password" + i), "user" + i);
+        }
+        assertTrue(reopened.authenticate("bob", "hunter2"));
+    }
+
+    @Test
+    void plainTextPasswordsAreRehashed() throws IOException {
+        Files.write(log.toPath(), "bob:hunter2\n".getBytes(StandardCharsets.UTF_8));
+        UserStore store = open();
+        assertFalse(store.authenticate("bob", "hunter3"));
+        assertTrue(store.authenticate("bob", "hunter2"));
+        String contents = Files.readString(log.toPath());
+        assertTrue(contents.contains("bob:pbkdf2$"), contents);
+        assertTrue(open().authenticate("bob", "hunter2"));
+    }
+
+    @Test
+    void malformedRecordsNeverMatch() throws IOException {
+        Files.write(log.toPath(), ("carol:pbkdf2$1000$c2FsdA==\n" + "dave:pbkdf2$x$c2FsdA==$aGFzaA==\n"
+                + "erin:pbkdf2$1000$not base64$aGFzaA==\n" + "frank:pbkdf2$\n").getBytes(StandardCharsets.UTF_8));
+        UserStore store = open();
+        for (String user : new String[] {"carol", "dave", "erin", "frank"}) {
+            assertTrue(store.exists(user), user);
+            assertFalse(store.authenticate(user, ""), user);
+        }
+    }
+
+    private UserStore open() throws IOException {
+        UserStore store = new UserStore(log, index, ITERATIONS);
+        store.open();
+        return store;
+    }
+}